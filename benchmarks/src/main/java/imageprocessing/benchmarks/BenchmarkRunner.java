@@ -0,0 +1,50 @@
+package imageprocessing.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with allocation profiling and JSON results unless told otherwise. Takes
+ * the same arguments as JMH itself, so for example
+ *
+ * java -jar benchmarks/target/benchmarks.jar Filter -p size=1920x1080
+ *
+ * runs only the filter benchmarks at one size. With no -prof the GC profiler is added, which
+ * reports bytes allocated per operation, and with no -rf or -rff results are written as JSON to
+ * jmh-result.json, so runs can be compared
+ */
+public class BenchmarkRunner {
+
+  /**
+   * Runs the benchmarks
+   * @param args JMH command line options
+   * @throws Exception if the options are invalid or the benchmarks can't run
+   */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions command = new CommandLineOptions(args);
+    if (command.shouldHelp()) {
+      command.showHelp();
+      return;
+    }
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(command);
+    if (command.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+    if (!command.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!command.getResult().hasValue()) {
+      options.result("jmh-result.json");
+    }
+    Runner runner = new Runner(options.build());
+    if (command.shouldList()) {
+      runner.list();
+      return;
+    }
+    runner.run();
+  }
+}
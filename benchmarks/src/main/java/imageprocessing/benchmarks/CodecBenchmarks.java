@@ -0,0 +1,134 @@
+package imageprocessing.benchmarks;
+
+import imageprocessing.model.PackedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving in every format. Plain PPM files are about four times the size of the raw
+ * pixels, so at 50 megapixels each of those operations takes seconds. Plain PPM input is also
+ * read with the reader loadImage used before, for comparison, and plain PPM output is measured
+ * in bytes written per second
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class CodecBenchmarks extends SizedImage {
+  private String plainPpm;
+  private String png;
+  private String jpg;
+  private String bmp;
+  private long plainPpmBytes;
+
+  /**
+   * Writes the image in every format to load from
+   * @throws IOException if a file can't be written
+   */
+  @Override
+  protected void prepare() throws IOException {
+    this.plainPpm = this.directory.resolve("plain.ppm").toString();
+    this.png = this.directory.resolve("image.png").toString();
+    this.jpg = this.directory.resolve("image.jpg").toString();
+    this.bmp = this.directory.resolve("image.bmp").toString();
+    this.model.saveImage(this.plainPpm, "src");
+    this.model.saveImage(this.png, "src");
+    this.model.saveImage(this.jpg, "src");
+    this.model.saveImage(this.bmp, "src");
+    this.plainPpmBytes = Files.size(this.directory.resolve("plain.ppm"));
+  }
+
+  @Benchmark
+  public PackedImage loadImagePlainPpm() {
+    this.model.loadImage(this.plainPpm, "in");
+    return this.model.getPackedImage("in");
+  }
+
+  /**
+   * Reads the same plain PPM file with the reader loadImage used before its own tokenizer, to
+   * compare against loadImagePlainPpm
+   * @return image read
+   */
+  @Benchmark
+  public PackedImage loadImagePlainPpmLegacy() {
+    return LegacyPpmReader.read(this.plainPpm);
+  }
+
+  @Benchmark
+  public PackedImage loadImageBinaryPpm() {
+    this.model.loadImage(this.source.toString(), "in");
+    return this.model.getPackedImage("in");
+  }
+
+  @Benchmark
+  public PackedImage imageToArrayPng() throws IOException {
+    this.model.imageToArray(this.png, "in");
+    return this.model.getPackedImage("in");
+  }
+
+  @Benchmark
+  public PackedImage imageToArrayJpg() throws IOException {
+    this.model.imageToArray(this.jpg, "in");
+    return this.model.getPackedImage("in");
+  }
+
+  @Benchmark
+  public PackedImage imageToArrayBmp() throws IOException {
+    this.model.imageToArray(this.bmp, "in");
+    return this.model.getPackedImage("in");
+  }
+
+  @Benchmark
+  public void saveImagePpm() throws IOException {
+    this.model.saveImage(this.directory.resolve("out.ppm").toString(), "src");
+  }
+
+  /**
+   * Writes the image as a plain PPM, counting the bytes written, which JMH reports per second
+   * @param written counter of bytes written
+   * @throws IOException if the file can't be written
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public void saveImagePpmBytes(Written written) throws IOException {
+    this.model.saveImage(this.directory.resolve("out.ppm").toString(), "src");
+    written.bytes += this.plainPpmBytes;
+  }
+
+  @Benchmark
+  public void saveBinaryImagePpm() throws IOException {
+    this.model.saveBinaryImage(this.directory.resolve("out-binary.ppm").toString(), "src");
+  }
+
+  @Benchmark
+  public void saveImagePng() throws IOException {
+    this.model.saveImage(this.directory.resolve("out.png").toString(), "src");
+  }
+
+  @Benchmark
+  public void saveImageJpg() throws IOException {
+    this.model.saveImage(this.directory.resolve("out.jpg").toString(), "src");
+  }
+
+  /**
+   * Bytes written by one thread, reported alongside the number of saves
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Written {
+    public long bytes;
+  }
+}
@@ -0,0 +1,41 @@
+package imageprocessing.benchmarks;
+
+import imageprocessing.view.Histogram;
+import java.awt.Image;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the GUI does to show an image: exporting it and building its histogram. The model keeps
+ * both for each image once made, so each benchmark first gives the image a new name by
+ * downscaling it to its own size, which reuses its pixels but starts with nothing cached
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class ExportBenchmarks extends SizedImage {
+
+  @Benchmark
+  public Image getImage() {
+    this.model.downscale(this.width, this.height, "src", "out");
+    return this.model.getImage("out");
+  }
+
+  /**
+   * Counts the image's pixels and draws the histogram
+   * @return the histogram
+   */
+  @Benchmark
+  public Histogram histogram() {
+    this.model.downscale(this.width, this.height, "src", "out");
+    return new Histogram(this.model.getStatistics("out"));
+  }
+}
@@ -0,0 +1,67 @@
+package imageprocessing.benchmarks;
+
+import imageprocessing.model.PackedImage;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filtering with the 3x3 blur and 5x5 sharpen kernels the editor uses, and with larger box
+ * kernels
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class FilterBenchmarks extends SizedImage {
+  /**
+   * Kernel to filter with
+   */
+  @Param({"blur3", "sharpen5", "box9", "box15"})
+  public String kernel;
+
+  private double[][] matrix;
+
+  /**
+   * Builds the kernel
+   */
+  @Override
+  protected void prepare() {
+    switch (this.kernel) {
+      case "blur3":
+        this.matrix = new double[][] {
+            {0.0625, 0.125, 0.0625},
+            {0.125, 0.25, 0.125},
+            {0.0625, 0.125, 0.0625}};
+        break;
+      case "sharpen5":
+        this.matrix = new double[][] {
+            {-0.125, -0.125, -0.125, -0.125, -0.125},
+            {-0.125, 0.25, 0.25, 0.25, -0.125},
+            {-0.125, 0.25, 1, 0.25, -0.125},
+            {-0.125, 0.25, 0.25, 0.25, -0.125},
+            {-0.125, -0.125, -0.125, -0.125, -0.125}};
+        break;
+      default:
+        int side = Integer.parseInt(this.kernel.substring("box".length()));
+        this.matrix = new double[side][side];
+        for (double[] row : this.matrix) {
+          Arrays.fill(row, 1.0 / (side * side));
+        }
+    }
+  }
+
+  @Benchmark
+  public PackedImage filter() {
+    this.model.filter(this.matrix, "src", "out");
+    return this.model.getPackedImage("out");
+  }
+}
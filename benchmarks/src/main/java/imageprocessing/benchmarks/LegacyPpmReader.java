@@ -0,0 +1,62 @@
+package imageprocessing.benchmarks;
+
+import imageprocessing.model.PackedImage;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * The plain PPM reader loadImage used before it had its own tokenizer, kept as it was so the
+ * two can be compared. It copies every line that isn't a comment into one string, then reads
+ * that string again number by number with a second Scanner
+ */
+final class LegacyPpmReader {
+
+  /**
+   * Not instantiable
+   */
+  private LegacyPpmReader() {
+  }
+
+  /**
+   * Reads a plain PPM file the old way
+   * @param filename path of the file
+   * @return image in the file
+   * @throws IllegalArgumentException if the file doesn't exist or a color is out of range
+   */
+  static PackedImage read(String filename) {
+    Scanner sc;
+    try {
+      sc = new Scanner(new FileInputStream(filename));
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("File " + filename + " not found!");
+    }
+
+    StringBuilder builder = new StringBuilder();
+    while (sc.hasNextLine()) {
+      String s = sc.nextLine();
+      if (s.charAt(0) != '#') {
+        builder.append(s + System.lineSeparator());
+      }
+    }
+
+    sc = new Scanner(builder.toString());
+    sc.next();
+    int width = sc.nextInt();
+    int height = sc.nextInt();
+    sc.nextInt();
+    PackedImage p = new PackedImage(width, height);
+    for (int h = 0; h < height; h += 1) {
+      for (int w = 0; w < width; w += 1) {
+        int r = sc.nextInt();
+        int g = sc.nextInt();
+        int b = sc.nextInt();
+        if ((r | g | b) < 0 || r > 255 || g > 255 || b > 255) {
+          throw new IllegalArgumentException("Color parameter outside of expected range");
+        }
+        p.setRGB(h, w, PackedImage.pack(r, g, b));
+      }
+    }
+    return p;
+  }
+}
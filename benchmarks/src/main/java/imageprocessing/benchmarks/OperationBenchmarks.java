@@ -0,0 +1,78 @@
+package imageprocessing.benchmarks;
+
+import imageprocessing.model.PackedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Point operations and flips over the whole image. The model only records an operation until
+ * its pixels are read, so each benchmark reads the result to time the actual work
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class OperationBenchmarks extends SizedImage {
+  private static final double[][] SEPIA = {
+      {0.393, 0.769, 0.189},
+      {0.349, 0.686, 0.168},
+      {0.272, 0.534, 0.131}};
+
+  @Benchmark
+  public PackedImage rgb() {
+    this.model.rgb("red", "src", "out");
+    return this.model.getPackedImage("out");
+  }
+
+  @Benchmark
+  public PackedImage value() {
+    this.model.value("src", "out");
+    return this.model.getPackedImage("out");
+  }
+
+  @Benchmark
+  public PackedImage intensity() {
+    this.model.intensity("src", "out");
+    return this.model.getPackedImage("out");
+  }
+
+  @Benchmark
+  public PackedImage colorTransform() {
+    this.model.colorTransform(SEPIA, "src", "out");
+    return this.model.getPackedImage("out");
+  }
+
+  @Benchmark
+  public PackedImage brighten() {
+    this.model.brighten(20, "src", "out");
+    return this.model.getPackedImage("out");
+  }
+
+  /**
+   * A flip is a view sharing its source's pixels, so this also copies it into plain row-major
+   * pixels the way saving or filtering it would
+   * @return flipped pixels
+   */
+  @Benchmark
+  public PackedImage flipHorizontal() {
+    this.model.flip(true, "src", "out");
+    return this.model.getPackedImage("out").compact();
+  }
+
+  /**
+   * Like flipHorizontal, copying the view into plain pixels
+   * @return flipped pixels
+   */
+  @Benchmark
+  public PackedImage flipVertical() {
+    this.model.flip(false, "src", "out");
+    return this.model.getPackedImage("out").compact();
+  }
+}
@@ -0,0 +1,101 @@
+package imageprocessing.benchmarks;
+
+import imageprocessing.model.ImageProcessingModelImpl;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A model holding one test image, named src and already decoded, at each benchmarked size from
+ * a thumbnail to 50 megapixels. The image is smooth gradients with some noise, so compressed
+ * formats neither shrink it to nothing nor see pure noise. It is written to a temporary
+ * directory as a binary PPM first, which benchmarks of other formats convert from
+ */
+@State(Scope.Benchmark)
+public abstract class SizedImage {
+  /**
+   * Width and height of the image
+   */
+  @Param({"160x120", "1920x1080", "4000x3000", "8660x5773"})
+  public String size;
+
+  protected int width;
+  protected int height;
+  protected Path directory;
+  protected Path source;
+  protected ImageProcessingModelImpl model;
+
+  /**
+   * Writes the image and loads it into a new model, then runs prepare
+   * @throws IOException if the image can't be written
+   */
+  @Setup
+  public void createImage() throws IOException {
+    String[] dimensions = this.size.split("x");
+    this.width = Integer.parseInt(dimensions[0]);
+    this.height = Integer.parseInt(dimensions[1]);
+    this.directory = Files.createTempDirectory("imageprocessing-benchmark-");
+    this.source = this.directory.resolve("source.ppm");
+    writeImage(this.source, this.width, this.height);
+    this.model = new ImageProcessingModelImpl();
+    this.model.loadImage(this.source.toString(), "src");
+    // decode now so no benchmark pays for it
+    this.model.getPackedImage("src");
+    this.prepare();
+  }
+
+  /**
+   * Sets up anything else a benchmark needs once the image is loaded. JMH doesn't promise to
+   * run a subclass's setup after this class's, so subclasses override this instead
+   * @throws IOException if a file can't be written
+   */
+  protected void prepare() throws IOException {
+  }
+
+  /**
+   * Deletes the temporary directory and everything in it
+   * @throws IOException if it can't be deleted
+   */
+  @TearDown
+  public void deleteImages() throws IOException {
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Writes the test image as a binary PPM
+   * @param path where to write it
+   * @param width width of the image
+   * @param height height of the image
+   * @throws IOException if it can't be written
+   */
+  private static void writeImage(Path path, int width, int height) throws IOException {
+    Random random = new Random(42);
+    byte[] row = new byte[3 * width];
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+      out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+      for (int y = 0; y < height; y += 1) {
+        for (int x = 0; x < width; x += 1) {
+          row[3 * x] = (byte) (x * 255 / Math.max(1, width - 1));
+          row[3 * x + 1] = (byte) (y * 255 / Math.max(1, height - 1));
+          row[3 * x + 2] = (byte) (((x ^ y) & 0x7F) + random.nextInt(64));
+        }
+        out.write(row);
+      }
+    }
+  }
+}
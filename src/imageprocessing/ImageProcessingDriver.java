@@ -1,10 +1,14 @@
 package imageprocessing;
 
+import imageprocessing.controller.BatchProcessor;
 import imageprocessing.controller.SwingGUIController;
 import imageprocessing.controller.Features;
+import imageprocessing.controller.HotFolder;
 import imageprocessing.controller.ImageProcessingController;
+import imageprocessing.controller.ImageServer;
 import imageprocessing.model.ImageProcessingModel;
 import imageprocessing.model.ImageProcessingModelImpl;
+import imageprocessing.model.SpillingImageStore;
 import imageprocessing.view.ImageProcessingGUIView;
 import imageprocessing.view.ImageProcessingSwingGUIView;
 import imageprocessing.view.ImageProcessingTextView;
@@ -12,7 +16,11 @@ import imageprocessing.view.ImageProcessingView;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
 /**
  * Driver of Image Processing editor that takes in inputs and
@@ -24,13 +32,28 @@ public class ImageProcessingDriver {
    *  * Argument options:
    *  * nothing: graphical user interface
    *  * -text: interactive text mode, one line at a time
-   *  * -file path-of-script-file.txt: opens script file, executes it, shuts down
+   *  * -file path-of-script-file.txt: opens script file, executes it (independent commands at
+   *  * the same time, skipping commands whose images are never saved), reports the image store's
+   *  * hits, misses and spills, shuts down
+   *  * -file path-of-script-file.txt -dry-run: lists the commands of a script file that would be
+   *  * skipped and about how much time that saves, without running it
+   *  * -batch path-of-script-file.txt input-directory output-directory: runs the script once for
+   *  * every file in the input directory, with {input}, {name}, {ext} and {output} in the script
+   *  * standing for the file, its name and extension, and the output directory, then reports
+   *  * throughput, latency per file, failures, and the image store's hits, misses and spills
+   *  * -watch path-of-script-file.txt input-directory output-directory: runs the script, with the
+   *  * same placeholders as -batch, for every file in the input directory not processed yet and
+   *  * every file that appears in it later, until stopped
+   *  * -serve port: answers POST requests to /process on the port, each with an image body and
+   *  * the edits to make in the ops query parameter, until stopped (see ImageServer)
    * @param args arguments (valid ones specified above)
    * @throws IOException if file can't be found in interactive text mode when uploading/saving
    */
   public static void main(String[] args) throws IOException {
     if (args.length == 0) {
-      ImageProcessingModel model = new ImageProcessingModelImpl();
+      ImageProcessingModelImpl model = new ImageProcessingModelImpl();
+      // every image the GUI shows gets a histogram, so count pixels as images are made
+      model.setStatisticsByProduct(true);
       Features controller = new SwingGUIController(model);
       ImageProcessingGUIView view = new ImageProcessingSwingGUIView();
       controller.setView(view);
@@ -42,17 +65,60 @@ public class ImageProcessingDriver {
         controller.menu(new Scanner(System.in));
       }
     } else if (args.length == 2) {
-      if (args[0].equals("-file")) {
+      if (args[0].equals("-serve")) {
+        ImageServer server = new ImageServer(() -> {
+          ImageProcessingModel model = new ImageProcessingModelImpl();
+          return new ImageProcessingController(model, new ImageProcessingTextView(model));
+        }, Integer.parseInt(args[1]), Runtime.getRuntime().availableProcessors());
+        server.start();
+        System.out.println("Serving on http://localhost:" + server.getPort() + "/process");
+      } else if (args[0].equals("-file")) {
         String filePath = args[1];
-        ImageProcessingModel model = new ImageProcessingModelImpl();
+        ImageProcessingModelImpl model = new ImageProcessingModelImpl();
         ImageProcessingView view = new ImageProcessingTextView(model);
         ImageProcessingController controller = new ImageProcessingController(model, view);
+        Scanner sc;
         try {
-          Scanner sc = new Scanner(new FileInputStream(filePath));
-          controller.menu(sc);
+          sc = new Scanner(new FileInputStream(filePath));
         } catch (FileNotFoundException e) {
           System.out.println("Script file not found");
+          return;
         }
+        try {
+          controller.runScript(sc);
+        } finally {
+          System.out.println("Image store: " + model.getStore());
+        }
+      }
+    } else if (args.length == 4 && (args[0].equals("-batch") || args[0].equals("-watch"))) {
+      Supplier<ImageProcessingController> controllers = () -> {
+        ImageProcessingModel model = new ImageProcessingModelImpl();
+        return new ImageProcessingController(model, new ImageProcessingTextView(model));
+      };
+      String script;
+      try {
+        script = new String(Files.readAllBytes(Paths.get(args[1])));
+      } catch (NoSuchFileException e) {
+        System.out.println("Script file not found");
+        return;
+      }
+      if (args[0].equals("-batch")) {
+        BatchProcessor batch = BatchProcessor.fromSystemProperty(controllers);
+        System.out.println(batch.run(script, Paths.get(args[2]), Paths.get(args[3])));
+        System.out.println("Image store: " + SpillingImageStore.shared());
+      } else {
+        int workers = Runtime.getRuntime().availableProcessors();
+        new HotFolder(controllers, script, Paths.get(args[2]), Paths.get(args[3]), workers,
+            4 * workers, System.out).run();
+      }
+    } else if (args.length == 3 && args[0].equals("-file") && args[2].equals("-dry-run")) {
+      ImageProcessingModel model = new ImageProcessingModelImpl();
+      ImageProcessingView view = new ImageProcessingTextView(model);
+      ImageProcessingController controller = new ImageProcessingController(model, view);
+      try {
+        System.out.println(controller.dryRun(new Scanner(new FileInputStream(args[1]))));
+      } catch (FileNotFoundException e) {
+        System.out.println("Script file not found");
       }
     } else {
       System.out.println("Invalid command-line argument(s)");
@@ -0,0 +1,101 @@
+package imageprocessing;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the same image to a server started with -serve many times at once and reports how
+ * fast it answered
+ */
+public class LoadTestClient {
+
+  /**
+   * Argument options, in order:
+   * * port of the server on localhost
+   * * path of the image to send
+   * * number of requests to send in all
+   * * number of requests to have in flight at once
+   * * optionally, the ops to ask for, sepia;blur if left out
+   * * optionally, the format to ask for, png if left out
+   * @param args arguments (valid ones specified above)
+   * @throws Exception if the image can't be read or a request is interrupted
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 4 || args.length > 6) {
+      System.out.println("Usage: port image-path requests concurrency [ops] [format]");
+      return;
+    }
+    int port = Integer.parseInt(args[0]);
+    byte[] image = Files.readAllBytes(Paths.get(args[1]));
+    int requests = Integer.parseInt(args[2]);
+    int concurrency = Integer.parseInt(args[3]);
+    if (requests < 1 || concurrency < 1) {
+      System.out.println("requests and concurrency must be positive");
+      return;
+    }
+    String ops = args.length > 4 ? args[4] : "sepia;blur";
+    String format = args.length > 5 ? args[5] : "png";
+    URI uri = URI.create("http://localhost:" + port + "/process?ops="
+        + URLEncoder.encode(ops, StandardCharsets.UTF_8).replace("+", "%20")
+        + "&format=" + format);
+
+    HttpClient client = HttpClient.newHttpClient();
+    long[] latencies = new long[requests];
+    AtomicLong failures = new AtomicLong();
+    AtomicLong received = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+    List<Future<?>> sent = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int i = 0; i < requests; i += 1) {
+      int index = i;
+      sent.add(pool.submit(() -> {
+        long begin = System.nanoTime();
+        try {
+          HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri)
+              .POST(HttpRequest.BodyPublishers.ofByteArray(image)).build(),
+              HttpResponse.BodyHandlers.ofByteArray());
+          if (response.statusCode() != 200) {
+            failures.incrementAndGet();
+            if (failures.get() == 1) {
+              System.out.println("First failure: " + response.statusCode() + " "
+                  + new String(response.body(), StandardCharsets.UTF_8).trim());
+            }
+          }
+          received.addAndGet(response.body().length);
+        } catch (IOException | InterruptedException e) {
+          failures.incrementAndGet();
+        }
+        latencies[index] = System.nanoTime() - begin;
+        return null;
+      }));
+    }
+    for (Future<?> request : sent) {
+      request.get();
+    }
+    long elapsed = System.nanoTime() - start;
+    pool.shutdown();
+
+    Arrays.sort(latencies);
+    System.out.println(String.format("%d request(s) in %.2f s: %.1f requests/sec, %.1f MB received",
+        requests, elapsed / 1e9, requests / (elapsed / 1e9), received.get() / 1e6));
+    System.out.println(String.format("Latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+        latencies[(int) Math.ceil(0.50 * requests) - 1] / 1e6,
+        latencies[(int) Math.ceil(0.99 * requests) - 1] / 1e6,
+        latencies[requests - 1] / 1e6));
+    System.out.println("Failures: " + failures.get());
+  }
+}
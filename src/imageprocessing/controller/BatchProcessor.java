@@ -0,0 +1,232 @@
+package imageprocessing.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs one script over every file in a directory. The script is a template: before it runs for
+ * a file, {input} is replaced by the file's path, {name} by its name without the extension,
+ * {ext} by its extension and {output} by the output directory, with any argument that ends up
+ * with spaces put in double quotes, so for example
+ *
+ * load {input} img
+ * sepia img img
+ * save {output}/{name}-sepia.{ext} img
+ *
+ * makes a sepia copy of every image. Each file gets its own controller and model, so files never
+ * see each other's images, and a file that fails, by throwing or by a command showing an error
+ * message such as for a name ID that doesn't exist, is recorded without stopping the others. Files
+ * run on virtual threads where the JDK has them, or on a pool of platform threads otherwise, with
+ * only a fixed number in progress at once so only that many images are held in memory.
+ */
+public final class BatchProcessor {
+  // system property with the number of files to process at once
+  static final String CONCURRENCY_PROPERTY = "imageprocessing.batch.concurrency";
+  // stream for the output of scripts nobody reads
+  static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+  // one whitespace separated argument of a script
+  private static final Pattern WORD = Pattern.compile("\\S+");
+  private final Supplier<ImageProcessingController> controllers;
+  private final int concurrency;
+
+  /**
+   * Creates a processor running at most the given number of files at once
+   * @param controllers makes a new controller, with a new model, for each file
+   * @param concurrency number of files to process at once
+   * @throws IllegalArgumentException if concurrency isn't positive
+   */
+  public BatchProcessor(Supplier<ImageProcessingController> controllers, int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be positive");
+    }
+    this.controllers = controllers;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Creates a processor running as many files at once as the imageprocessing.batch.concurrency
+   * system property says, or one per processor if it isn't set
+   * @param controllers makes a new controller, with a new model, for each file
+   * @return new processor
+   */
+  public static BatchProcessor fromSystemProperty(
+      Supplier<ImageProcessingController> controllers) {
+    return new BatchProcessor(controllers, Integer.getInteger(CONCURRENCY_PROPERTY,
+        Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Runs a script over every file in a directory, creating the output directory if needed
+   * @param script text of the script, with placeholders
+   * @param inputDir directory of files to process; subdirectories are ignored
+   * @param outputDir directory the script saves to
+   * @return report of throughput, latency per file, and every failure
+   * @throws IOException if a directory can't be read or created
+   */
+  public String run(String script, Path inputDir, Path outputDir) throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(inputDir)) {
+      files = listing.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    Files.createDirectories(outputDir);
+    long[] latencies = new long[files.size()];
+    String[] failures = new String[files.size()];
+    Semaphore slots = new Semaphore(this.concurrency);
+    long start = System.nanoTime();
+    ExecutorService executor = executor(this.concurrency);
+    try {
+      for (int i = 0; i < files.size(); i += 1) {
+        int index = i;
+        Path file = files.get(i);
+        // wait for a free slot before starting the next file, so no more are held at once
+        slots.acquireUninterruptibly();
+        executor.execute(() -> {
+          long begin = System.nanoTime();
+          try (ImageProcessingController controller = this.controllers.get()) {
+            run(controller, script, file, outputDir);
+          } catch (Throwable e) {
+            // anything thrown, errors too, counts the file as failed rather than done
+            failures[index] = e.toString();
+          } finally {
+            latencies[index] = System.nanoTime() - begin;
+            slots.release();
+          }
+        });
+      }
+      // every slot is free again once the last file is done
+      slots.acquireUninterruptibly(this.concurrency);
+    } finally {
+      executor.shutdown();
+    }
+    return report(files, latencies, failures, System.nanoTime() - start);
+  }
+
+  /**
+   * Runs a script for one file, failing if a command shows an error message, since a command
+   * like one naming an image that doesn't exist only shows a message rather than throwing
+   * @param controller controller to run the script on
+   * @param script text of the script, with placeholders
+   * @param file file to process
+   * @param outputDir directory the script saves to
+   * @throws IOException if loading/saving cannot be done
+   * @throws IllegalArgumentException with the first error message the script showed
+   */
+  static void run(ImageProcessingController controller, String script, Path file,
+      Path outputDir) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+    controller.runScript(new Scanner(fill(script, file, outputDir)), 1, out);
+    for (String line : buffer.toString(StandardCharsets.UTF_8).split("\\R")) {
+      if (ScriptCommand.isError(line)) {
+        throw new IllegalArgumentException(line);
+      }
+    }
+  }
+
+  /**
+   * Fills in a script's placeholders for one file. Every whitespace separated argument holding
+   * a placeholder is filled in on its own and put in double quotes if it then has spaces, so
+   * paths with spaces stay one argument
+   * @param script text of the script
+   * @param file file to process
+   * @param outputDir directory the script saves to
+   * @return script for that file
+   * @throws IllegalArgumentException if a filled in argument can't be written in a script
+   */
+  static String fill(String script, Path file, Path outputDir) {
+    String fileName = file.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+    String ext = dot > 0 ? fileName.substring(dot + 1) : "";
+    Matcher word = WORD.matcher(script);
+    StringBuilder filled = new StringBuilder();
+    while (word.find()) {
+      String argument = word.group();
+      if (argument.contains("{")) {
+        String value = argument.replace("{input}", file.toString())
+            .replace("{name}", name)
+            .replace("{ext}", ext)
+            .replace("{output}", outputDir.toString());
+        argument = value.equals(argument) ? argument : ImageProcessingController.quote(value);
+      }
+      word.appendReplacement(filled, Matcher.quoteReplacement(argument));
+    }
+    word.appendTail(filled);
+    return filled.toString();
+  }
+
+  /**
+   * Makes an executor running each task on its own virtual thread if this JDK has them, or else
+   * a pool of platform threads
+   * @param threads number of platform threads to use without virtual threads
+   * @return new executor
+   */
+  static ExecutorService executor(int threads) {
+    try {
+      // looked up by name so the project still builds and runs on JDKs without virtual threads
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(threads);
+    }
+  }
+
+  /**
+   * Describes a finished run
+   * @param files every file processed
+   * @param latencies time each file took, in nanoseconds
+   * @param failures what each file failed with, or null if it didn't
+   * @param elapsed time the whole run took, in nanoseconds
+   * @return report of throughput, latency per file, and every failure
+   */
+  private static String report(List<Path> files, long[] latencies, String[] failures,
+      long elapsed) {
+    List<String> lines = new ArrayList<>();
+    lines.add(String.format("Processed %d file(s) in %.2f s: %.1f images/sec", files.size(),
+        elapsed / 1e9, files.size() / Math.max(elapsed / 1e9, 1e-9)));
+    if (!files.isEmpty()) {
+      long[] sorted = latencies.clone();
+      Arrays.sort(sorted);
+      lines.add(String.format("Latency per image: p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+          percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+          sorted[sorted.length - 1] / 1e6));
+    }
+    List<String> failed = new ArrayList<>();
+    for (int i = 0; i < files.size(); i += 1) {
+      if (failures[i] != null) {
+        failed.add("  " + files.get(i).getFileName() + ": " + failures[i]);
+      }
+    }
+    lines.add("Failures: " + failed.size());
+    lines.addAll(failed);
+    return String.join("\n", lines);
+  }
+
+  /**
+   * Gets a percentile by the nearest rank method
+   * @param sorted values in increasing order, at least one
+   * @param percent percentile to get, from 1 to 100
+   * @return smallest value at least that percent of values are no greater than
+   */
+  private static long percentile(long[] sorted, int percent) {
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+}
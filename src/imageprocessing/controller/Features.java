@@ -82,4 +82,19 @@ public interface Features {
    * @param nameID nameID of image in model
    */
   void reset(String nameID);
+
+  /**
+   * Turns preview mode on or off. In preview mode edits are shown on a copy of the image
+   * downscaled to fit the display, and full resolution images are only computed when saved or
+   * rendered in full. Shows the image with given nameID at the new resolution, if it exists
+   * @param preview true to turn preview mode on, false to edit at full resolution
+   * @param nameID nameID of working image in model
+   */
+  void setPreview(boolean preview, String nameID);
+
+  /**
+   * Shows image with given nameID in model at full resolution, computing it if needed
+   * @param nameID nameID of image in model
+   */
+  void renderFull(String nameID);
 }
\ No newline at end of file
@@ -0,0 +1,289 @@
+package imageprocessing.controller;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory and runs a script over every file that appears in it, until interrupted.
+ * The script is a template with the same placeholders as BatchProcessor, filled in and quoted
+ * the same way, and each file gets its own controller and model.
+ *
+ * A file is only processed once its size and modification time have stayed the same for a
+ * while, so files still being copied in aren't read half written. Finished files wait in a
+ * bounded queue for a fixed number of workers; when the queue is full the watcher waits too, so
+ * a flood of files can't use up memory. Every processed file is recorded in a journal in the
+ * output directory, and on start any file in the directory that isn't in the journal, or has
+ * changed since, is processed. A file is recorded only after its script finishes, so a file
+ * being processed when the program stops is processed again on the next start: each file is
+ * processed at least once.
+ */
+public final class HotFolder {
+  // name of the journal, in the output directory
+  static final String JOURNAL = ".processed";
+  // how long a file has to stay the same before it is processed
+  private static final long SETTLE_MILLIS = 500;
+
+  private final Supplier<ImageProcessingController> controllers;
+  private final String script;
+  private final Path inputDir;
+  private final Path outputDir;
+  private final int workers;
+  private final BlockingQueue<Path> queue;
+  // files in the queue or being processed
+  private final Set<Path> queued;
+  // size and modification time of the last version of each file processed
+  private final Map<Path, String> processed;
+  private final PrintStream log;
+  private Writer journal;
+
+  /**
+   * Creates a hot folder
+   * @param controllers makes a new controller, with a new model, for each file
+   * @param script text of the script, with placeholders
+   * @param inputDir directory to watch
+   * @param outputDir directory the script saves to, which holds the journal
+   * @param workers number of files to process at once
+   * @param capacity number of finished files that can wait to be processed
+   * @param log where to report each file processed
+   * @throws IllegalArgumentException if workers or capacity isn't positive, or the directories
+   *         are the same
+   */
+  public HotFolder(Supplier<ImageProcessingController> controllers, String script, Path inputDir,
+      Path outputDir, int workers, int capacity, PrintStream log) {
+    if (workers < 1 || capacity < 1) {
+      throw new IllegalArgumentException("workers and queue capacity must be positive");
+    }
+    if (inputDir.toAbsolutePath().normalize().equals(outputDir.toAbsolutePath().normalize())) {
+      throw new IllegalArgumentException("output directory can't be the watched directory");
+    }
+    this.controllers = controllers;
+    this.script = script;
+    this.inputDir = inputDir.toAbsolutePath().normalize();
+    this.outputDir = outputDir;
+    this.workers = workers;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.queued = ConcurrentHashMap.newKeySet();
+    this.processed = new ConcurrentHashMap<>();
+    this.log = log;
+  }
+
+  /**
+   * Processes every file not processed yet, then watches for new ones until the thread is
+   * interrupted
+   * @throws IOException if a directory or the journal can't be read or written
+   */
+  public void run() throws IOException {
+    Files.createDirectories(this.outputDir);
+    Path journalPath = this.outputDir.resolve(JOURNAL);
+    this.readJournal(journalPath);
+    this.journal = new OutputStreamWriter(new FileOutputStream(journalPath.toFile(), true),
+        StandardCharsets.UTF_8);
+    ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+    try (WatchService watcher = this.inputDir.getFileSystem().newWatchService()) {
+      this.inputDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+      for (int i = 0; i < this.workers; i += 1) {
+        pool.execute(this::work);
+      }
+      this.watch(watcher);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
+      try {
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      this.journal.close();
+    }
+  }
+
+  /**
+   * Loads the journal left by earlier runs. A line cut short by the program stopping is ignored,
+   * so that file is processed again
+   * @param journalPath path of the journal
+   * @throws IOException if the journal exists but can't be read
+   */
+  private void readJournal(Path journalPath) throws IOException {
+    if (!Files.exists(journalPath)) {
+      return;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 4);
+        if (fields.length == 4) {
+          this.processed.put(Paths.get(fields[3]), fields[0] + "\t" + fields[1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Queues files as they settle, until interrupted. Files waiting to settle are checked every
+   * SETTLE_MILLIS, and the whole directory is checked again if the watcher loses track of events
+   * @param watcher watch service the input directory is registered with
+   * @throws IOException if the input directory can't be read
+   * @throws InterruptedException if interrupted
+   */
+  private void watch(WatchService watcher) throws IOException, InterruptedException {
+    // files that may not be finished, with their size and modification time when last seen
+    Map<Path, String> settling = new HashMap<>();
+    this.scan(settling);
+    long lastCheck = System.nanoTime();
+    while (true) {
+      WatchKey key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+      if (key != null) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            this.scan(settling);
+          } else {
+            // any change starts the wait over
+            settling.put(this.inputDir.resolve((Path) event.context()), "");
+          }
+        }
+        key.reset();
+      }
+      if (System.nanoTime() - lastCheck < TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS)) {
+        continue;
+      }
+      lastCheck = System.nanoTime();
+      Iterator<Map.Entry<Path, String>> files = settling.entrySet().iterator();
+      while (files.hasNext()) {
+        Map.Entry<Path, String> file = files.next();
+        String stamp = stamp(file.getKey());
+        if (stamp == null) {
+          files.remove();
+        } else if (!stamp.equals(file.getValue())) {
+          file.setValue(stamp);
+        } else {
+          files.remove();
+          this.offer(file.getKey(), stamp);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds every file in the input directory to the files waiting to settle
+   * @param settling files waiting to settle
+   * @throws IOException if the input directory can't be read
+   */
+  private void scan(Map<Path, String> settling) throws IOException {
+    try (Stream<Path> listing = Files.list(this.inputDir)) {
+      listing.forEach(file -> settling.putIfAbsent(file, ""));
+    }
+  }
+
+  /**
+   * Queues a settled file unless it is already queued or this version was already processed,
+   * waiting while the queue is full
+   * @param file file that has settled
+   * @param stamp its size and modification time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private void offer(Path file, String stamp) throws InterruptedException {
+    if (!Files.isRegularFile(file) || stamp.equals(this.processed.get(file))
+        || !this.queued.add(file)) {
+      return;
+    }
+    this.queue.put(file);
+  }
+
+  /**
+   * Processes queued files until interrupted
+   */
+  private void work() {
+    try {
+      while (true) {
+        Path file = this.queue.take();
+        try {
+          this.process(file);
+        } finally {
+          this.queued.remove(file);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Runs the script over one file and records it in the journal. A file that fails, even with
+   * an error like running out of memory or a command showing an error message, is recorded too,
+   * so it isn't retried until it changes
+   * @param file file to process
+   */
+  private void process(Path file) {
+    String stamp = stamp(file);
+    if (stamp == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    String status = "ok";
+    try (ImageProcessingController controller = this.controllers.get()) {
+      BatchProcessor.run(controller, this.script, file, this.outputDir);
+      this.log.println(String.format("Processed %s in %.1f ms", file.getFileName(),
+          (System.nanoTime() - start) / 1e6));
+    } catch (Throwable e) {
+      status = "failed";
+      this.log.println("Failed " + file.getFileName() + ": " + e);
+    }
+    try {
+      this.record(file, stamp, status);
+    } catch (IOException e) {
+      this.log.println("Unable to record " + file.getFileName() + " in journal: " + e);
+    }
+  }
+
+  /**
+   * Adds a processed file to the journal, writing it out before returning
+   * @param file file processed
+   * @param stamp its size and modification time before it was processed
+   * @param status ok, or failed
+   * @throws IOException if the journal can't be written
+   */
+  private synchronized void record(Path file, String stamp, String status) throws IOException {
+    this.journal.write(stamp + "\t" + status + "\t" + file + "\n");
+    this.journal.flush();
+    this.processed.put(file, stamp);
+  }
+
+  /**
+   * Gets what identifies the current version of a file
+   * @param file file to check
+   * @return its size and modification time separated by a tab, or null if it is gone
+   */
+  private static String stamp(Path file) {
+    try {
+      return Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
@@ -1,16 +1,32 @@
 package imageprocessing.controller;
 
+import imageprocessing.model.ChannelLut;
 import imageprocessing.model.ImageProcessingModel;
 import imageprocessing.view.ImageProcessingView;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
- * Controller for user-input/script file commands
+ * Controller for user-input/script file commands. Closing it clears its model, giving back the
+ * space its images take in the image store, which models made side by side share
  */
-public class ImageProcessingController {
+public class ImageProcessingController implements AutoCloseable {
+  private static final String PROMPT = "Hello! Welcome to the image processing editor. If "
+      + "you'd like to see your editing options, type options. Otherwise, type your desired "
+      + "command.";
+
+  // a path in double quotes, which can't hold quotes or line breaks
+  private static final Pattern QUOTED = Pattern.compile("\\s*\"([^\"\\r\\n]*)\"");
+  private static final Pattern QUOTED_START = Pattern.compile("\".*");
+
   private ImageProcessingModel model;
   private ImageProcessingView view;
 
@@ -33,8 +49,7 @@ public class ImageProcessingController {
     boolean exit = false;
 
     while (!exit) {
-      System.out.println("Hello! Welcome to the image processing editor. If you'd like to see your"
-          + " editing options, type options. Otherwise, type your desired command.");
+      System.out.println(PROMPT);
       String input = scanner.next();
       if (input.equals("file")) {
         Scanner sc;
@@ -44,231 +59,428 @@ public class ImageProcessingController {
           input = sc.next();
           scanner = sc;
         } catch (FileNotFoundException e) {
-          System.out.println("File not found! Type your desired command.");
+          System.out.println(ScriptCommand.NO_SCRIPT);
           input = scanner.next();
         }
       }
-      switch (input) {
-        case "options":
-          userOptions();
-          break;
-        case "load":
-          String pathLoad = scanner.next();
-          String nameLoad = scanner.next();
-          if (pathLoad.substring(pathLoad.length() - 4).equals(".ppm")) {
-            this.model.loadImage(pathLoad, nameLoad);
-          } else {
-            this.model.imageToArray(pathLoad, nameLoad);
-          }
-          break;
-        case "save":
-          String pathSave = scanner.next();
-          String nameSave = scanner.next();
-          if (!this.model.existingID(nameSave)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.saveImage(pathSave, nameSave);
-          }
-          break;
-        case "red-component":
-          String nameRed = scanner.next();
-          String destNameR = scanner.next();
-          if (!this.model.existingID(nameRed)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.rgb("red", nameRed, destNameR);
-          }
-          break;
-        case "blue-component":
-          String nameBlue = scanner.next();
-          String destNameB = scanner.next();
-          if (!this.model.existingID(nameBlue)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.rgb("blue", nameBlue, destNameB);
-          }
-          break;
-        case "green-component":
-          String nameGreen = scanner.next();
-          String destNameG = scanner.next();
-          if (!this.model.existingID(nameGreen)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.rgb("green", nameGreen, destNameG);
-          }
-          break;
-        case "value-component":
-          String nameValue = scanner.next();
-          String destNameV = scanner.next();
-          if (!this.model.existingID(nameValue)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.value(nameValue, destNameV);
-          }
-          break;
-        case "luma-component":
-        case "greyscale":
-          String nameLuma = scanner.next();
-          String destNameL = scanner.next();
-          if (!this.model.existingID(nameLuma)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            double[][] matrix = new double[3][3];
-            for (int i = 0; i < 3; i++) {
-              matrix[i][0] = 0.2126;
-              matrix[i][1] = 0.7152;
-              matrix[i][2] = 0.0722;
-            }
-            this.model.colorTransform(matrix, nameLuma, destNameL);
-          }
-          break;
-        case "sepia":
-          String nameSepia = scanner.next();
-          String destNameS = scanner.next();
-          if (!this.model.existingID(nameSepia)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            double[][] matrix = new double[3][3];
-            matrix[0][0] = 0.393;
-            matrix[0][1] = 0.769;
-            matrix[0][2] = 0.189;
-            matrix[1][0] = 0.349;
-            matrix[1][1] = 0.686;
-            matrix[1][2] = 0.168;
-            matrix[2][0] = 0.272;
-            matrix[2][1] = 0.534;
-            matrix[2][2] = 0.131;
-            this.model.colorTransform(matrix, nameSepia, destNameS);
-          }
-          break;
-        case "intensity-component":
-          String nameIntensity = scanner.next();
-          String destNameI = scanner.next();
-          if (!this.model.existingID(nameIntensity)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.intensity(nameIntensity, destNameI);
-          }
-          break;
-        case "brighten":
-          int increment = scanner.nextInt();
-          String nameBrighten = scanner.next();
-          String destNameBright = scanner.next();
-          if (!this.model.existingID(nameBrighten)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.brighten(increment, nameBrighten, destNameBright);
-          }
-          break;
-        case "vertical-flip":
-          String nameVFlip = scanner.next();
-          String destNameVFlip = scanner.next();
-          if (!this.model.existingID(nameVFlip)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.flip(false, nameVFlip, destNameVFlip);
-          }
-          break;
-        case "horizontal-flip":
-          String nameHFlip = scanner.next();
-          String destNameHFlip = scanner.next();
-          if (!this.model.existingID(nameHFlip)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            this.model.flip(true, nameHFlip, destNameHFlip);
-          }
-          break;
-        case "blur":
-          String nameBlur = scanner.next();
-          String destNameBlur = scanner.next();
-          if (!this.model.existingID(nameBlur)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            double[][] matrix = new double[3][3];
-            matrix[0][0] = .0625;
-            matrix[0][1] = 0.125;
-            matrix[0][2] = .0625;
-            matrix[1][0] = 0.125;
-            matrix[1][1] = .25;
-            matrix[1][2] = 0.125;
-            matrix[2][0] = .0625;
-            matrix[2][1] = 0.125;
-            matrix[2][2] = .0625;
-            this.model.filter(matrix, nameBlur, destNameBlur);
-          }
-          break;
-        case "sharpen":
-          String nameSharpen = scanner.next();
-          String destNameSharpen = scanner.next();
-          if (!this.model.existingID(nameSharpen)) {
-            System.out.println("name ID doesn't exist in system");
-          } else {
-            double[][] matrix = new double[5][5];
-            matrix[0][0] = -0.125;
-            matrix[0][1] = -0.125;
-            matrix[0][2] = -0.125;
-            matrix[0][3] = -0.125;
-            matrix[0][4] = -0.125;
-            matrix[1][0] = -0.125;
-            matrix[1][1] = .25;
-            matrix[1][2] = .25;
-            matrix[1][3] = .25;
-            matrix[1][4] = -0.125;
-            matrix[2][0] = -0.125;
-            matrix[2][1] = .25;
-            matrix[2][2] = 1;
-            matrix[2][3] = .25;
-            matrix[2][4] = -0.125;
-            matrix[3][0] = -0.125;
-            matrix[3][1] = .25;
-            matrix[3][2] = .25;
-            matrix[3][3] = .25;
-            matrix[3][4] = -0.125;
-            matrix[4][0] = -0.125;
-            matrix[4][1] = -0.125;
-            matrix[4][2] = -0.125;
-            matrix[4][3] = -0.125;
-            matrix[4][4] = -0.125;
-            this.model.filter(matrix, nameSharpen, destNameSharpen);
+      ScriptCommand command = this.parse(input, scanner);
+      String message = command.run(this.model);
+      if (message != null) {
+        System.out.println(message);
+      }
+      exit = command.isExit();
+    }
+  }
+
+  /**
+   * Runs a whole script, reading every command up to exit (or the end of the input) before
+   * running any, and running commands that don't depend on each other at the same time on one
+   * thread per processor. A command that can't be read still only fails once the commands
+   * before it have run. Every name ID and file still sees exactly the writes that come before
+   * it in the script, and output is printed in script order. Loads and edits whose images never
+   * reach a save are skipped, but still count toward the images exit shows, and a skipped load
+   * still fails on a missing file or one whose header can't be read
+   * @param scanner scanner to read the script from
+   * @throws IOException if loading/saving cannot be done
+   */
+  public void runScript(Scanner scanner) throws IOException {
+    this.runScript(scanner, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Runs a whole script, reading every command up to exit (or the end of the input) before
+   * running any, skipping loads and edits whose images never reach a save, and running commands
+   * that don't depend on each other at the same time
+   * @param scanner scanner to read the script from
+   * @param threads number of commands to run at once
+   * @throws IOException if loading/saving cannot be done
+   */
+  public void runScript(Scanner scanner, int threads) throws IOException {
+    this.runScript(scanner, threads, System.out);
+  }
+
+  /**
+   * Runs a whole script like runScript, printing its output somewhere other than standard
+   * output
+   * @param scanner scanner to read the script from
+   * @param threads number of commands to run at once
+   * @param out where to print output
+   * @throws IOException if loading/saving cannot be done
+   */
+  public void runScript(Scanner scanner, int threads, PrintStream out) throws IOException {
+    ScriptRunner.run(ScriptPruner.prune(this.parseScript(scanner)), this.model, threads, PROMPT,
+        out);
+  }
+
+  /**
+   * Removes every image from the model, once nothing more will be run on it
+   */
+  @Override
+  public void close() {
+    this.model.clear();
+  }
+
+  /**
+   * Reads a whole script without running it, and describes which commands runScript would skip
+   * because their images never reach a save, with about how much time skipping them saves
+   * @param scanner scanner to read the script from
+   * @return report of the skipped commands, by their place in the script
+   */
+  public String dryRun(Scanner scanner) {
+    return ScriptPruner.report(this.parseScript(scanner));
+  }
+
+  /**
+   * Reads every command of a script up to exit or the end of the input, following file
+   * commands into the script they name. A command that can't be read, like one missing an
+   * argument or given a word for a number, ends the script with a command that fails once every
+   * command before it has run, as menu would fail on reaching it
+   * @param scanner scanner to read the script from
+   * @return commands in script order
+   */
+  private List<ScriptCommand> parseScript(Scanner scanner) {
+    List<ScriptCommand> commands = new ArrayList<>();
+    // shown before the next command's output, as menu shows it
+    String notice = null;
+    while (scanner.hasNext()) {
+      String input = scanner.next();
+      ScriptCommand command;
+      try {
+        if (input.equals("file")) {
+          String filename = scanner.next();
+          try {
+            scanner = new Scanner(new FileInputStream(filename));
+          } catch (FileNotFoundException e) {
+            notice = ScriptCommand.NO_SCRIPT;
           }
-          break;
-        case "exit":
-          System.out.println(this.view.view("hello"));
-          exit = true;
-          break;
-        default:
-          System.out.println("That is not a valid option.");
+          continue;
+        }
+        command = this.parse(input, scanner);
+      } catch (NoSuchElementException e) {
+        commands.add(ScriptCommand.failure(input, e));
+        break;
+      }
+      if (notice != null) {
+        command = command.after(notice);
+        notice = null;
+      }
+      commands.add(command);
+      if (command.isExit()) {
+        break;
+      }
+    }
+    return commands;
+  }
+
+  /**
+   * Reads the arguments of one command
+   * @param input name of the command
+   * @param scanner scanner to read the arguments from
+   * @return the command, ready to run
+   */
+  private ScriptCommand parse(String input, Scanner scanner) {
+    Arguments args = new Arguments(input, scanner);
+    switch (input) {
+      case "options":
+        return ScriptCommand.independent(args.text(), this::userOptions);
+      case "load":
+        String pathLoad = args.nextPath();
+        String nameLoad = args.next();
+        return ScriptCommand.of(args.text(), null, Set.of(ScriptCommand.file(pathLoad)),
+            Set.of(ScriptCommand.name(nameLoad)), () -> {
+              this.model.openImage(pathLoad, nameLoad);
+              return null;
+            }).whenSkipped(() -> {
+              // a file load can't read still stops the script, with the model's own message
+              if (!this.model.canOpen(pathLoad)) {
+                this.model.openImage(pathLoad, nameLoad);
+              }
+              return null;
+            });
+      case "save":
+        String pathSave = args.nextPath();
+        String nameSave = args.next();
+        return ScriptCommand.of(args.text(), nameSave, Set.of(ScriptCommand.name(nameSave)),
+            Set.of(ScriptCommand.file(pathSave)), () -> {
+              this.model.saveImage(pathSave, nameSave);
+              return null;
+            });
+      case "save-binary":
+        String pathSaveBinary = args.nextPath();
+        String nameSaveBinary = args.next();
+        return ScriptCommand.of(args.text(), nameSaveBinary,
+            Set.of(ScriptCommand.name(nameSaveBinary)),
+            Set.of(ScriptCommand.file(pathSaveBinary)), () -> {
+              this.model.saveBinaryImage(pathSaveBinary, nameSaveBinary);
+              return null;
+            });
+      case "red-component":
+        String nameRed = args.next();
+        String destNameR = args.next();
+        return this.edit(args, nameRed, destNameR, () -> this.model.rgb("red", nameRed, destNameR));
+      case "blue-component":
+        String nameBlue = args.next();
+        String destNameB = args.next();
+        return this.edit(args, nameBlue, destNameB,
+            () -> this.model.rgb("blue", nameBlue, destNameB));
+      case "green-component":
+        String nameGreen = args.next();
+        String destNameG = args.next();
+        return this.edit(args, nameGreen, destNameG,
+            () -> this.model.rgb("green", nameGreen, destNameG));
+      case "value-component":
+        String nameValue = args.next();
+        String destNameV = args.next();
+        return this.edit(args, nameValue, destNameV, () -> this.model.value(nameValue, destNameV));
+      case "luma-component":
+      case "greyscale": {
+        String nameLuma = args.next();
+        String destNameL = args.next();
+        double[][] matrix = new double[3][3];
+        for (int i = 0; i < 3; i++) {
+          matrix[i][0] = 0.2126;
+          matrix[i][1] = 0.7152;
+          matrix[i][2] = 0.0722;
+        }
+        return this.edit(args, nameLuma, destNameL,
+            () -> this.model.colorTransform(matrix, nameLuma, destNameL));
+      }
+      case "sepia": {
+        String nameSepia = args.next();
+        String destNameS = args.next();
+        double[][] matrix = new double[3][3];
+        matrix[0][0] = 0.393;
+        matrix[0][1] = 0.769;
+        matrix[0][2] = 0.189;
+        matrix[1][0] = 0.349;
+        matrix[1][1] = 0.686;
+        matrix[1][2] = 0.168;
+        matrix[2][0] = 0.272;
+        matrix[2][1] = 0.534;
+        matrix[2][2] = 0.131;
+        return this.edit(args, nameSepia, destNameS,
+            () -> this.model.colorTransform(matrix, nameSepia, destNameS));
       }
+      case "intensity-component":
+        String nameIntensity = args.next();
+        String destNameI = args.next();
+        return this.edit(args, nameIntensity, destNameI,
+            () -> this.model.intensity(nameIntensity, destNameI));
+      case "brighten":
+        int increment = args.nextInt();
+        String nameBrighten = args.next();
+        String destNameBright = args.next();
+        return this.edit(args, nameBrighten, destNameBright,
+            () -> this.model.brighten(increment, nameBrighten, destNameBright));
+      case "levels":
+        int black = args.nextInt();
+        double gamma = args.nextDouble();
+        int white = args.nextInt();
+        String nameLevels = args.next();
+        String destNameLevels = args.next();
+        return this.edit(args, nameLevels, destNameLevels,
+            () -> this.model.applyLut(ChannelLut.levels(black, gamma, white), nameLevels,
+                destNameLevels));
+      case "vertical-flip":
+        String nameVFlip = args.next();
+        String destNameVFlip = args.next();
+        return this.edit(args, nameVFlip, destNameVFlip,
+            () -> this.model.flip(false, nameVFlip, destNameVFlip));
+      case "horizontal-flip":
+        String nameHFlip = args.next();
+        String destNameHFlip = args.next();
+        return this.edit(args, nameHFlip, destNameHFlip,
+            () -> this.model.flip(true, nameHFlip, destNameHFlip));
+      case "blur": {
+        String nameBlur = args.next();
+        String destNameBlur = args.next();
+        double[][] matrix = new double[3][3];
+        matrix[0][0] = .0625;
+        matrix[0][1] = 0.125;
+        matrix[0][2] = .0625;
+        matrix[1][0] = 0.125;
+        matrix[1][1] = .25;
+        matrix[1][2] = 0.125;
+        matrix[2][0] = .0625;
+        matrix[2][1] = 0.125;
+        matrix[2][2] = .0625;
+        return this.edit(args, nameBlur, destNameBlur,
+            () -> this.model.filter(matrix, nameBlur, destNameBlur));
+      }
+      case "sharpen": {
+        String nameSharpen = args.next();
+        String destNameSharpen = args.next();
+        double[][] matrix = new double[5][5];
+        matrix[0][0] = -0.125;
+        matrix[0][1] = -0.125;
+        matrix[0][2] = -0.125;
+        matrix[0][3] = -0.125;
+        matrix[0][4] = -0.125;
+        matrix[1][0] = -0.125;
+        matrix[1][1] = .25;
+        matrix[1][2] = .25;
+        matrix[1][3] = .25;
+        matrix[1][4] = -0.125;
+        matrix[2][0] = -0.125;
+        matrix[2][1] = .25;
+        matrix[2][2] = 1;
+        matrix[2][3] = .25;
+        matrix[2][4] = -0.125;
+        matrix[3][0] = -0.125;
+        matrix[3][1] = .25;
+        matrix[3][2] = .25;
+        matrix[3][3] = .25;
+        matrix[3][4] = -0.125;
+        matrix[4][0] = -0.125;
+        matrix[4][1] = -0.125;
+        matrix[4][2] = -0.125;
+        matrix[4][3] = -0.125;
+        matrix[4][4] = -0.125;
+        return this.edit(args, nameSharpen, destNameSharpen,
+            () -> this.model.filter(matrix, nameSharpen, destNameSharpen));
+      }
+      case "exit":
+        return ScriptCommand.exit(args.text(), unmade -> this.view.view("hello", unmade));
+      default:
+        return ScriptCommand.independent(args.text(), () -> ScriptCommand.INVALID);
+    }
+  }
+
+  /**
+   * Creates a command that makes a new image from an existing one, if the existing one exists
+   * @param args arguments of the command, all read
+   * @param nameID name ID of image to edit
+   * @param destName name ID to set edited image to
+   * @param edit model operation making the edit
+   * @return the command
+   */
+  private ScriptCommand edit(Arguments args, String nameID, String destName, Runnable edit) {
+    return ScriptCommand.of(args.text(), nameID, Set.of(ScriptCommand.name(nameID)),
+        Set.of(ScriptCommand.name(destName)), () -> {
+          edit.run();
+          return null;
+        });
+  }
+
+  /**
+   * Writes a path the way a script reads it, in double quotes if it has any whitespace
+   * @param path path to write
+   * @return the path as one argument of a command
+   * @throws IllegalArgumentException if the path needs quotes but has a quote or line break
+   */
+  static String quote(String path) {
+    if (!path.matches(".*\\s.*") && !path.startsWith("\"")) {
+      return path;
+    }
+    if (path.contains("\"") || path.contains("\n") || path.contains("\r")) {
+      throw new IllegalArgumentException("path can't be written in a script: " + path);
+    }
+    return "\"" + path + "\"";
+  }
+
+  /**
+   * Reads the arguments of a command, remembering them so the command can be shown as written
+   */
+  private static final class Arguments {
+    private final Scanner scanner;
+    private final StringBuilder text;
+
+    /**
+     * Starts reading the arguments of a command
+     * @param input name of the command
+     * @param scanner scanner to read the arguments from
+     */
+    private Arguments(String input, Scanner scanner) {
+      this.scanner = scanner;
+      this.text = new StringBuilder(input);
+    }
+
+    /**
+     * Reads a word
+     * @return the word
+     */
+    private String next() {
+      String word = this.scanner.next();
+      this.text.append(' ').append(word);
+      return word;
+    }
+
+    /**
+     * Reads a path, which is written in double quotes if it has spaces
+     * @return the path, without quotes
+     */
+    private String nextPath() {
+      if (!this.scanner.hasNext(QUOTED_START)) {
+        return this.next();
+      }
+      this.scanner.skip(QUOTED);
+      String path = this.scanner.match().group(1);
+      this.text.append(' ').append(quote(path));
+      return path;
+    }
+
+    /**
+     * Reads a whole number
+     * @return the number
+     */
+    private int nextInt() {
+      int number = this.scanner.nextInt();
+      this.text.append(' ').append(number);
+      return number;
+    }
+
+    /**
+     * Reads a number
+     * @return the number
+     */
+    private double nextDouble() {
+      double number = this.scanner.nextDouble();
+      this.text.append(' ').append(number);
+      return number;
+    }
+
+    /**
+     * Gets the command with every argument read so far
+     * @return command name and arguments, separated by spaces
+     */
+    private String text() {
+      return this.text.toString();
     }
   }
 
   /**
-   * Prints options available to user
+   * Lists the options available to user
+   * @return one line per command
    */
-  private void userOptions() {
-    System.out.println("Here are your command options.");
-    System.out.println("load image-path image-name (load an image from the specified path and refer to it "
-        + "henceforth in the program by the given destination name)");
-    System.out.println("In the following commands, dest-image-name refers to the name "
-        + "which the newly created image will be referred to\nas in the program"
-            + "and image-name refers to the name of the image to do the command on.");
-    System.out.println("save image-path image-name (save an image to the specified path "
-        + "which should include the name of the file)");
-    System.out.println("horizontal-flip image-name dest-image-name (flip an image horizontally)");
-    System.out.println("vertical-flip image-name dest-image-name (flip an image vertically)");
-    System.out.println("red-component image-name dest-image-name (create a greyscale image with the red-component of an image)");
-    System.out.println("blue-component image-name dest-image-name (create a greyscale image with the blue-component of an image)");
-    System.out.println("green-component image-name dest-image-name (create a greyscale image with the green-component of an image)");
-    System.out.println("value-component image-name dest-image-name (create a greyscale image with the value-component of an image)");
-    System.out.println("luma-component image-name dest-image-name (create a greyscale image with the luma-component of an image)");
-    System.out.println("greyscale image-name dest-image-name (create a greyscale image with the luma-component of an image)");
-    System.out.println("sepia image-name dest-image-name (create a sepia-toned image from an image)");
-    System.out.println("intensity-component image-name dest-image-name (create a greyscale image with the intensity-component of an image)");
-    System.out.println("brighten increment image-name dest-image-name (brighten an image by the given increment;"
-        + "the increment may be positive (brightening) or negative (darkening))");
-    System.out.println("blur image-name dest-image-name (blur an image with Gaussian blur");
-    System.out.println("sharpen image-name dest-image-name (sharpen an image");
-    System.out.println("file script-name.txt (run a script file and exit program afterwards)");
-    System.out.println("exit (exit the system)");
+  private String userOptions() {
+    return String.join("\n",
+        "Here are your command options.",
+        "load image-path image-name (load an image from the specified path and refer to it "
+            + "henceforth in the program by the given destination name)",
+        "In the following commands, dest-image-name refers to the name "
+            + "which the newly created image will be referred to\nas in the program"
+                + "and image-name refers to the name of the image to do the command on.",
+        "save image-path image-name (save an image to the specified path "
+            + "which should include the name of the file)",
+        "save-binary image-path image-name (save an image as a binary PPM, "
+            + "or a binary PGM if the path ends in .pgm)",
+        "horizontal-flip image-name dest-image-name (flip an image horizontally)",
+        "vertical-flip image-name dest-image-name (flip an image vertically)",
+        "red-component image-name dest-image-name (create a greyscale image with the red-component of an image)",
+        "blue-component image-name dest-image-name (create a greyscale image with the blue-component of an image)",
+        "green-component image-name dest-image-name (create a greyscale image with the green-component of an image)",
+        "value-component image-name dest-image-name (create a greyscale image with the value-component of an image)",
+        "luma-component image-name dest-image-name (create a greyscale image with the luma-component of an image)",
+        "greyscale image-name dest-image-name (create a greyscale image with the luma-component of an image)",
+        "sepia image-name dest-image-name (create a sepia-toned image from an image)",
+        "intensity-component image-name dest-image-name (create a greyscale image with the intensity-component of an image)",
+        "brighten increment image-name dest-image-name (brighten an image by the given increment;"
+            + "the increment may be positive (brightening) or negative (darkening))",
+        "levels black gamma white image-name dest-image-name (map black to 0 and "
+            + "white to 255, adjusting midtones by gamma)",
+        "blur image-name dest-image-name (blur an image with Gaussian blur",
+        "sharpen image-name dest-image-name (sharpen an image",
+        "file script-name.txt (run a script file and exit program afterwards)",
+        "exit (exit the system)");
   }
 }
\ No newline at end of file
@@ -0,0 +1,313 @@
+package imageprocessing.controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Serves image processing over HTTP, so a long-running process can take jobs without starting
+ * a new JVM for each. A POST to /process sends an image as the request body, in any format the
+ * editor loads, and names the edits to make in the ops query parameter: commands from the script
+ * vocabulary without their image names, separated by semicolons, such as
+ *
+ * /process?ops=sepia;brighten 20;horizontal-flip&amp;format=png
+ *
+ * Each command runs on the result of the one before, and the final image is sent back encoded
+ * as the format parameter says, png if it is missing. Every request gets its own controller and
+ * model, so requests never see each other's images. Requests run on virtual threads where the
+ * JDK has them, or on a pool of platform threads otherwise, with only a fixed number processed
+ * at once so only that many images are held in memory; the rest wait their turn. Uploads
+ * larger than the imageprocessing.server.maxUpload system property, 256MB by default, are
+ * refused.
+ */
+public final class ImageServer {
+  // system property holding the largest upload accepted, in bytes
+  static final String MAX_UPLOAD_PROPERTY = "imageprocessing.server.maxUpload";
+  // edits a request can make, with the numbers each takes before its image names: w for a whole
+  // number and n for any number
+  private static final Map<String, String> EDITS = new HashMap<>();
+  // content type of each format a result can be sent in
+  private static final Map<String, String> FORMATS = new HashMap<>();
+
+  static {
+    for (String edit : new String[] {"red-component", "green-component", "blue-component",
+        "value-component", "luma-component", "greyscale", "intensity-component", "sepia",
+        "vertical-flip", "horizontal-flip", "blur", "sharpen"}) {
+      EDITS.put(edit, "");
+    }
+    EDITS.put("brighten", "w");
+    EDITS.put("levels", "wnw");
+    FORMATS.put("png", "image/png");
+    FORMATS.put("jpg", "image/jpeg");
+    FORMATS.put("jpeg", "image/jpeg");
+    FORMATS.put("bmp", "image/bmp");
+    FORMATS.put("ppm", "image/x-portable-pixmap");
+    FORMATS.put("pgm", "image/x-portable-graymap");
+  }
+
+  private final Supplier<ImageProcessingController> controllers;
+  private final Semaphore slots;
+  private final long maxUpload;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a server listening on a port, not yet started
+   * @param controllers makes a new controller, with a new model, for each request
+   * @param port port to listen on, or 0 for any free port
+   * @param concurrency number of requests to process at once
+   * @throws IOException if the port can't be listened on
+   * @throws IllegalArgumentException if concurrency isn't positive
+   */
+  public ImageServer(Supplier<ImageProcessingController> controllers, int port, int concurrency)
+      throws IOException {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be positive");
+    }
+    this.controllers = controllers;
+    this.slots = new Semaphore(concurrency);
+    this.maxUpload = Long.getLong(MAX_UPLOAD_PROPERTY, 256L << 20);
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    this.executor = BatchProcessor.executor(concurrency);
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/process", this::handle);
+  }
+
+  /**
+   * Starts answering requests, on threads of its own
+   */
+  public void start() {
+    this.server.start();
+  }
+
+  /**
+   * Stops answering requests, letting ones in progress finish for up to a second
+   */
+  public void stop() {
+    this.server.stop(1);
+    this.executor.shutdown();
+  }
+
+  /**
+   * Gets the port the server listens on
+   * @return port number
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Answers one request
+   * @param exchange the request and its response
+   * @throws IOException if the connection fails
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        reply(exchange, 405, "Only POST is supported");
+        return;
+      }
+      Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+      String format = query.getOrDefault("format", "png").toLowerCase();
+      if (!FORMATS.containsKey(format)) {
+        reply(exchange, 400, "Unknown format " + format);
+        return;
+      }
+      String edits;
+      try {
+        edits = script(query.getOrDefault("ops", ""));
+      } catch (IllegalArgumentException e) {
+        reply(exchange, 400, e.getMessage());
+        return;
+      }
+      this.slots.acquireUninterruptibly();
+      try {
+        this.process(exchange, edits, format);
+      } finally {
+        this.slots.release();
+      }
+    }
+  }
+
+  /**
+   * Runs the edits over the request's image and sends back the result. Anything that goes wrong
+   * before the response starts is answered with an error status; once it has started, the
+   * connection is closed short of the length it announced, so the client can't mistake part
+   * of an image for all of it
+   * @param exchange the request and its response
+   * @param edits script lines making the edits to img
+   * @param format format to send the result in
+   * @throws IOException if the connection fails
+   */
+  private void process(HttpExchange exchange, String edits, String format) throws IOException {
+    Path input = Files.createTempFile("imageprocessing-", ".upload");
+    Path output = Files.createTempFile("imageprocessing-", "." + format);
+    try {
+      if (!this.receive(exchange, input)) {
+        reply(exchange, 413, "Images can be at most " + this.maxUpload + " bytes");
+        return;
+      }
+      String save = format.equals("ppm") || format.equals("pgm") ? "save-binary" : "save";
+      // quoted, since the temporary directory can have spaces in its path
+      String script = "load " + ImageProcessingController.quote(input.toString()) + " img\n"
+          + edits + save + " " + ImageProcessingController.quote(output.toString())
+          + " img\nexit\n";
+      long length;
+      try (ImageProcessingController controller = this.controllers.get()) {
+        controller.runScript(new Scanner(script), 1, BatchProcessor.DISCARD);
+        length = Files.size(output);
+      } catch (IllegalArgumentException e) {
+        reply(exchange, 400, "Unable to process image: " + hide(e.getMessage(), input, output));
+        return;
+      } catch (Throwable e) {
+        reply(exchange, 500, "Unable to process image: " + hide(e.toString(), input, output));
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", FORMATS.get(format));
+      exchange.sendResponseHeaders(200, length);
+      try {
+        Files.copy(output, exchange.getResponseBody());
+      } catch (IOException e) {
+        // too late for an error status; the exchange is closed short of its length
+      }
+    } finally {
+      Files.deleteIfExists(input);
+      Files.deleteIfExists(output);
+    }
+  }
+
+  /**
+   * Copies the request body to a file, unless it is larger than the largest upload accepted
+   * @param exchange the request and its response
+   * @param input file to copy to
+   * @return true if the whole body was copied, false if it was too large
+   * @throws IOException if the connection or the file fails
+   */
+  private boolean receive(HttpExchange exchange, Path input) throws IOException {
+    String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+    try {
+      if (declared != null && Long.parseLong(declared) > this.maxUpload) {
+        return false;
+      }
+    } catch (NumberFormatException e) {
+      // the body is still counted as it is read
+    }
+    byte[] buffer = new byte[1 << 16];
+    long total = 0;
+    try (InputStream in = exchange.getRequestBody();
+        OutputStream out = Files.newOutputStream(input)) {
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        total += read;
+        if (total > this.maxUpload) {
+          return false;
+        }
+        out.write(buffer, 0, read);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hides where the server keeps the upload and the result in a message for the client, which
+   * has no use for them
+   * @param message message to send
+   * @param input path of the upload
+   * @param output path of the result
+   * @return message without those paths
+   */
+  private static String hide(String message, Path input, Path output) {
+    return String.valueOf(message).replace(input.toString(), "the uploaded image")
+        .replace(output.toString(), "the result");
+  }
+
+  /**
+   * Turns the ops parameter into script lines editing the image named img in place, checking
+   * each is an edit with the right number of numbers, so a request can't load or save files
+   * @param ops commands separated by semicolons, without image names
+   * @return one script line per command
+   * @throws IllegalArgumentException if a command isn't an edit, or has the wrong arguments
+   */
+  static String script(String ops) {
+    StringBuilder script = new StringBuilder();
+    for (String op : ops.split(";")) {
+      String[] words = op.trim().split("\\s+");
+      if (words[0].isEmpty()) {
+        continue;
+      }
+      String numbers = EDITS.get(words[0]);
+      if (numbers == null) {
+        throw new IllegalArgumentException("Unknown operation " + words[0]);
+      }
+      if (words.length != numbers.length() + 1) {
+        throw new IllegalArgumentException(words[0] + " takes " + numbers.length()
+            + " number(s)");
+      }
+      script.append(words[0]);
+      for (int i = 1; i < words.length; i += 1) {
+        try {
+          if (numbers.charAt(i - 1) == 'w') {
+            Integer.parseInt(words[i]);
+          } else {
+            Double.parseDouble(words[i]);
+          }
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException(words[0] + " can't take " + words[i]);
+        }
+        script.append(' ').append(words[i]);
+      }
+      script.append(" img img\n");
+    }
+    return script.toString();
+  }
+
+  /**
+   * Splits a query string into its parameters
+   * @param rawQuery query string, still URL encoded, or null
+   * @return value of each parameter by name
+   */
+  private static Map<String, String> query(String rawQuery) {
+    Map<String, String> parameters = new HashMap<>();
+    if (rawQuery == null) {
+      return parameters;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      String value = equals < 0 ? "" : pair.substring(equals + 1);
+      parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+
+  /**
+   * Sends a plain text response
+   * @param exchange the request and its response
+   * @param status HTTP status code
+   * @param message body of the response
+   * @throws IOException if the connection fails
+   */
+  private static void reply(HttpExchange exchange, int status, String message)
+      throws IOException {
+    byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
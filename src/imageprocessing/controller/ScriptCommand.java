@@ -0,0 +1,307 @@
+package imageprocessing.controller;
+
+import imageprocessing.model.ImageProcessingModel;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Set;
+
+/**
+ * One parsed command of a script: what it does, and which name IDs and files it reads and
+ * writes, so commands that don't touch the same ones can run at the same time
+ */
+final class ScriptCommand {
+  // message for a command whose image doesn't exist
+  static final String MISSING = "name ID doesn't exist in system";
+  // message for a command that isn't one
+  static final String INVALID = "That is not a valid option.";
+  // message for a file command whose script doesn't exist
+  static final String NO_SCRIPT = "File not found! Type your desired command.";
+  private static final String NAME = "name ";
+  private static final String FILE = "file ";
+
+  private final String text;
+  private final String requires;
+  private final Set<String> reads;
+  private final Set<String> writes;
+  private final boolean barrier;
+  // message shown before the command's own, or null
+  private final String notice;
+  private final Action action;
+  // what the command still does when skipped, or null if nothing
+  private final Action check;
+  // what exit shows, or null for any other command
+  private final Report report;
+  // name IDs skipped commands would have made, which exit counts as if they had been
+  private final Set<String> unmade;
+
+  /**
+   * Creates a command
+   * @param text the command as written in the script
+   * @param requires name ID that has to exist for the command to do anything, or null
+   * @param reads name IDs and files the command reads, as given by name and file
+   * @param writes name IDs and files the command writes, as given by name and file
+   * @param barrier true if the command has to see the result of every command before it
+   * @param notice message shown before the command's own, or null
+   * @param action what the command does, or null for exit
+   * @param check what the command still does when skipped, or null if nothing
+   * @param report what exit shows, or null for any other command
+   * @param unmade name IDs skipped commands would have made, counted by exit
+   */
+  private ScriptCommand(String text, String requires, Set<String> reads, Set<String> writes,
+      boolean barrier, String notice, Action action, Action check, Report report,
+      Set<String> unmade) {
+    this.text = text;
+    this.requires = requires;
+    this.reads = reads;
+    this.writes = writes;
+    this.barrier = barrier;
+    this.notice = notice;
+    this.action = action;
+    this.check = check;
+    this.report = report;
+    this.unmade = unmade;
+  }
+
+  /**
+   * Creates a command that reads and writes the given name IDs and files
+   * @param text the command as written in the script
+   * @param requires name ID that has to exist for the command to do anything, or null
+   * @param reads name IDs and files read, as given by name and file
+   * @param writes name IDs and files written, as given by name and file
+   * @param action what the command does
+   * @return new command
+   */
+  static ScriptCommand of(String text, String requires, Set<String> reads, Set<String> writes,
+      Action action) {
+    return new ScriptCommand(text, requires, reads, writes, false, null, action, null, null,
+        Set.of());
+  }
+
+  /**
+   * Creates a command that doesn't touch any image
+   * @param text the command as written in the script
+   * @param action what the command does
+   * @return new command
+   */
+  static ScriptCommand independent(String text, Action action) {
+    return new ScriptCommand(text, null, Set.of(), Set.of(), false, null, action, null, null,
+        Set.of());
+  }
+
+  /**
+   * Creates the command ending a script, which sees every command before it
+   * @param text the command as written in the script
+   * @param report what the command shows
+   * @return new command
+   */
+  static ScriptCommand exit(String text, Report report) {
+    return new ScriptCommand(text, null, Set.of(), Set.of(), true, null, null, null, report,
+        Set.of());
+  }
+
+  /**
+   * Creates a command standing for one that couldn't be read, which fails once every command
+   * before it has run
+   * @param text name of the command
+   * @param failure what reading its arguments threw
+   * @return new command
+   */
+  static ScriptCommand failure(String text, RuntimeException failure) {
+    return new ScriptCommand(text, null, Set.of(), Set.of(), true, null, () -> {
+      throw failure;
+    }, null, null, Set.of());
+  }
+
+  /**
+   * Gives this command with a message shown before its own
+   * @param notice message to show first
+   * @return new command touching the same name IDs and files
+   */
+  ScriptCommand after(String notice) {
+    return new ScriptCommand(this.text, this.requires, this.reads, this.writes, this.barrier,
+        notice, this.action, this.check, this.report, this.unmade);
+  }
+
+  /**
+   * Gives this command with something it still does when skipped, such as failing the way it
+   * would have when it can't run
+   * @param check what to do when skipped, touching only what this command reads
+   * @return new command touching the same name IDs and files
+   */
+  ScriptCommand whenSkipped(Action check) {
+    return new ScriptCommand(this.text, this.requires, this.reads, this.writes, this.barrier,
+        this.notice, this.action, check, this.report, this.unmade);
+  }
+
+  /**
+   * Gives a command that does nothing in place of this one but its check, for a command whose
+   * result is never used. It still shows this command's notice, and writes nothing
+   * @return new command
+   */
+  ScriptCommand skipped() {
+    if (this.check == null) {
+      return new ScriptCommand(this.text, null, Set.of(), Set.of(), false, this.notice,
+          () -> null, null, null, Set.of());
+    }
+    return new ScriptCommand(this.text, null, this.reads, Set.of(), false, this.notice,
+        this.check, null, null, Set.of());
+  }
+
+  /**
+   * Gives this command counting the given name IDs as made, for exit at the end of a script
+   * whose commands making them were skipped, so it shows the same count as when they run
+   * @param names keys, given by name, of name IDs the skipped commands would have made
+   * @return new command
+   */
+  ScriptCommand counting(Set<String> names) {
+    return new ScriptCommand(this.text, this.requires, this.reads, this.writes, this.barrier,
+        this.notice, this.action, this.check, this.report, names);
+  }
+
+  /**
+   * Checks if a line of a script's output is one of the messages a command shows instead of
+   * doing anything
+   * @param line line of output
+   * @return true for the message of a command that did nothing because it couldn't
+   */
+  static boolean isError(String line) {
+    return line.equals(MISSING) || line.equals(INVALID) || line.equals(NO_SCRIPT);
+  }
+
+  /**
+   * Gives the key a name ID is tracked by
+   * @param nameID name ID of an image
+   * @return key for the name ID
+   */
+  static String name(String nameID) {
+    return NAME + nameID;
+  }
+
+  /**
+   * Gives the key a file is tracked by, the same for every path leading to it
+   * @param path path of the file
+   * @return key for the file
+   */
+  static String file(String path) {
+    return FILE + Paths.get(path).toAbsolutePath().normalize();
+  }
+
+  /**
+   * Checks if a key is for a name ID
+   * @param key key given by name or file
+   * @return true for a name ID
+   */
+  static boolean isName(String key) {
+    return key.startsWith(NAME);
+  }
+
+  /**
+   * Gets the file a key is for
+   * @param key key given by name or file
+   * @return absolute path of the file, or null if the key is for a name ID
+   */
+  static String path(String key) {
+    return key.startsWith(FILE) ? key.substring(FILE.length()) : null;
+  }
+
+  /**
+   * Gets the command as written in the script
+   * @return command name and arguments
+   */
+  String getText() {
+    return this.text;
+  }
+
+  /**
+   * Gets the name ID that has to exist for this command to do anything
+   * @return name ID, or null if the command doesn't need one
+   */
+  String getRequires() {
+    return this.requires;
+  }
+
+  /**
+   * Gets the name IDs and files this command reads
+   * @return keys given by name and file
+   */
+  Set<String> getReads() {
+    return this.reads;
+  }
+
+  /**
+   * Gets the name IDs and files this command writes
+   * @return keys given by name and file
+   */
+  Set<String> getWrites() {
+    return this.writes;
+  }
+
+  /**
+   * Checks if this command has to wait for every command before it
+   * @return true if it depends on everything before it
+   */
+  boolean isBarrier() {
+    return this.barrier;
+  }
+
+  /**
+   * Checks if this command ends the script
+   * @return true for exit
+   */
+  boolean isExit() {
+    return this.report != null;
+  }
+
+  /**
+   * Runs this command, unless the image it needs doesn't exist
+   * @param model model to check for the image in
+   * @return message to show the user, or null if there is none
+   * @throws IOException if loading or saving fails
+   */
+  String run(ImageProcessingModel model) throws IOException {
+    String message;
+    if (this.requires != null && !model.existingID(this.requires)) {
+      message = MISSING;
+    } else if (this.report != null) {
+      int unmade = 0;
+      for (String name : this.unmade) {
+        if (!model.existingID(name.substring(NAME.length()))) {
+          unmade += 1;
+        }
+      }
+      message = this.report.run(unmade);
+    } else {
+      message = this.action.run();
+    }
+    if (this.notice == null) {
+      return message;
+    }
+    return message == null ? this.notice : this.notice + System.lineSeparator() + message;
+  }
+
+  /**
+   * What a command does
+   */
+  interface Action {
+
+    /**
+     * Does it
+     * @return message to show the user, or null if there is none
+     * @throws IOException if loading or saving fails
+     */
+    String run() throws IOException;
+  }
+
+  /**
+   * What exit shows
+   */
+  interface Report {
+
+    /**
+     * Describes the model
+     * @param unmade number of images skipped commands would have made, which aren't in the model
+     * @return message to show the user
+     */
+    String run(int unmade);
+  }
+}
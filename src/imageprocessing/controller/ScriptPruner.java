@@ -0,0 +1,191 @@
+package imageprocessing.controller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Finds the commands of a script whose results can never reach a saved file, so they can be
+ * skipped. Working back from the end of the script, a load or edit is needed only if it writes a
+ * name ID that a later needed command reads before anything else writes it; saves, and commands
+ * that don't write an image, are always needed.
+ *
+ * Which name IDs exist at each command is worked out ahead of time, assuming every load
+ * succeeds, which holds for any script that gets past its loads since a failed load stops the
+ * script. A command whose image doesn't exist yet only prints a message, so it is never skipped
+ * and never counts as writing its name ID.
+ */
+final class ScriptPruner {
+  // estimated time to decode a file, in nanoseconds per byte of plain and raw netpbm files
+  private static final double PLAIN_NANOS_PER_BYTE = 4.1;
+  private static final double RAW_NANOS_PER_BYTE = 1.9;
+  // estimated time to decode a file, in nanoseconds per pixel of bmp and compressed files
+  private static final double BMP_NANOS_PER_PIXEL = 8;
+  private static final double COMPRESSED_NANOS_PER_PIXEL = 20;
+
+  /**
+   * Not meant to be created
+   */
+  private ScriptPruner() {
+  }
+
+  /**
+   * Works out which commands of a script are needed
+   * @param commands commands in script order
+   * @return true for each command whose result can reach a saved file or the output
+   */
+  static boolean[] live(List<ScriptCommand> commands) {
+    boolean[] effective = new boolean[commands.size()];
+    Set<String> defined = new HashSet<>();
+    for (int i = 0; i < commands.size(); i += 1) {
+      ScriptCommand command = commands.get(i);
+      effective[i] = command.getRequires() == null
+          || defined.contains(ScriptCommand.name(command.getRequires()));
+      if (effective[i]) {
+        for (String write : command.getWrites()) {
+          if (ScriptCommand.isName(write)) {
+            defined.add(write);
+          }
+        }
+      }
+    }
+    boolean[] live = new boolean[commands.size()];
+    Set<String> needed = new HashSet<>();
+    for (int i = commands.size() - 1; i >= 0; i -= 1) {
+      ScriptCommand command = commands.get(i);
+      boolean makesImage = !command.getWrites().isEmpty();
+      boolean used = false;
+      for (String write : command.getWrites()) {
+        makesImage &= ScriptCommand.isName(write);
+        used |= needed.contains(write);
+      }
+      if (effective[i] && makesImage && !used) {
+        continue;
+      }
+      live[i] = true;
+      if (effective[i]) {
+        needed.removeAll(command.getWrites());
+      }
+      needed.addAll(command.getReads());
+    }
+    return live;
+  }
+
+  /**
+   * Replaces every command that isn't needed with one that does nothing, and has exit count the
+   * name IDs the skipped commands would have made, so it shows the same count as the script
+   * @param commands commands in script order
+   * @return commands in script order, with the same output as the script
+   */
+  static List<ScriptCommand> prune(List<ScriptCommand> commands) {
+    boolean[] live = live(commands);
+    List<ScriptCommand> pruned = new ArrayList<>();
+    Set<String> unmade = new HashSet<>();
+    for (int i = 0; i < commands.size(); i += 1) {
+      ScriptCommand command = commands.get(i);
+      if (live[i]) {
+        pruned.add(command.isExit() ? command.counting(Set.copyOf(unmade)) : command);
+      } else {
+        // only commands that run and write nothing but name IDs are skipped
+        unmade.addAll(command.getWrites());
+        pruned.add(command.skipped());
+      }
+    }
+    return pruned;
+  }
+
+  /**
+   * Describes which commands prune would skip and about how much time that saves. Only loads
+   * are counted, since the model only computes edits for images that are saved or used by one
+   * @param commands commands in script order
+   * @return one line per skipped command and a total
+   */
+  static String report(List<ScriptCommand> commands) {
+    boolean[] live = live(commands);
+    List<String> lines = new ArrayList<>();
+    int skipped = 0;
+    long nanos = 0;
+    for (int i = 0; i < commands.size(); i += 1) {
+      if (live[i]) {
+        continue;
+      }
+      skipped += 1;
+      ScriptCommand command = commands.get(i);
+      String line = "  " + (i + 1) + ": " + command.getText();
+      for (String read : command.getReads()) {
+        String path = ScriptCommand.path(read);
+        if (path != null) {
+          long estimate = estimateLoad(path);
+          if (estimate < 0) {
+            line += " (file can't be read)";
+          } else {
+            line += " (about " + millis(estimate) + " to decode)";
+            nanos += estimate;
+          }
+        }
+      }
+      lines.add(line);
+    }
+    lines.add(0, skipped + " of " + commands.size()
+        + " command(s) would be skipped, since nothing they make reaches a save");
+    lines.add("Estimated time saved: about " + millis(nanos));
+    return String.join("\n", lines);
+  }
+
+  /**
+   * Estimates how long loading a file takes, from its size and format
+   * @param path path of the file
+   * @return estimated time in nanoseconds, or -1 if the file can't be read
+   */
+  private static long estimateLoad(String path) {
+    File file = new File(path);
+    try (InputStream in = new FileInputStream(file)) {
+      int first = in.read();
+      int second = in.read();
+      if (first == 'P' && second >= '1' && second <= '3') {
+        return Math.round(file.length() * PLAIN_NANOS_PER_BYTE);
+      }
+      if (first == 'P' && second >= '4' && second <= '6') {
+        return Math.round(file.length() * RAW_NANOS_PER_BYTE);
+      }
+    } catch (IOException e) {
+      return -1;
+    }
+    try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+      if (readers == null || !readers.hasNext()) {
+        return -1;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in);
+        long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+        double perPixel = reader.getFormatName().equalsIgnoreCase("bmp")
+            ? BMP_NANOS_PER_PIXEL : COMPRESSED_NANOS_PER_PIXEL;
+        return Math.round(pixels * perPixel);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Formats a time for the report
+   * @param nanos time in nanoseconds
+   * @return time in milliseconds, to one decimal place
+   */
+  private static String millis(long nanos) {
+    return String.format("%.1f ms", nanos / 1e6);
+  }
+}
@@ -0,0 +1,243 @@
+package imageprocessing.controller;
+
+import imageprocessing.model.ImageProcessingModel;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a parsed script on a pool of threads, starting each command as soon as the commands it
+ * depends on are done. A command depends on the last earlier command writing anything it reads
+ * or writes, and on every earlier command reading something it writes since that was last
+ * written, so each name ID and file sees exactly the writes it would if the script ran one
+ * command at a time, while commands on unrelated images run at the same time.
+ *
+ * Output is printed in script order no matter which command finishes first, so it is the same
+ * as running the script one command at a time. Once a command fails, no command after it in the
+ * script starts; the commands before it still finish, and then the failure of the first failing
+ * command is thrown. A command writing a file also waits for every command before it, so a file
+ * is only written if every command before it succeeded, as when running one command at a time.
+ * Later commands that were already running may still have changed images, but nothing after the
+ * failure is printed or saved.
+ *
+ * With one thread the commands run in script order on the calling thread, with the same
+ * results, so a caller that already runs many scripts side by side doesn't pay for a pool per
+ * script.
+ */
+final class ScriptRunner {
+  private final List<ScriptCommand> commands;
+  private final ImageProcessingModel model;
+  private final String prompt;
+  private final PrintStream out;
+  // message of each command once it is done
+  private final String[] messages;
+  private final boolean[] done;
+  private final boolean[] failed;
+  // next command whose output hasn't been printed
+  private int printed;
+  // index of the first command in the script that failed, and what it threw
+  private int firstFailure;
+  private Throwable failure;
+
+  /**
+   * Creates a runner for a script
+   * @param commands commands in script order
+   * @param model model the commands run on
+   * @param prompt text printed before each command's output
+   * @param out where to print output
+   */
+  private ScriptRunner(List<ScriptCommand> commands, ImageProcessingModel model, String prompt,
+      PrintStream out) {
+    this.commands = commands;
+    this.model = model;
+    this.prompt = prompt;
+    this.out = out;
+    this.messages = new String[commands.size()];
+    this.done = new boolean[commands.size()];
+    this.failed = new boolean[commands.size()];
+    this.firstFailure = commands.size();
+  }
+
+  /**
+   * Runs every command of a script, independent ones at the same time
+   * @param commands commands in script order
+   * @param model model the commands run on
+   * @param threads number of commands to run at once
+   * @param prompt text printed before each command's output
+   * @param out where to print output
+   * @throws IOException if a command fails to load or save an image
+   */
+  static void run(List<ScriptCommand> commands, ImageProcessingModel model, int threads,
+      String prompt, PrintStream out) throws IOException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("number of threads must be positive");
+    }
+    new ScriptRunner(commands, model, prompt, out).run(threads);
+  }
+
+  /**
+   * Works out which earlier commands each command has to wait for. Barriers and commands
+   * writing a file wait for every command before them
+   * @param commands commands in script order
+   * @return indices of the commands each command depends on
+   */
+  static List<Set<Integer>> dependencies(List<ScriptCommand> commands) {
+    List<Set<Integer>> dependencies = new ArrayList<>();
+    Map<String, Integer> lastWriter = new HashMap<>();
+    Map<String, List<Integer>> readers = new HashMap<>();
+    for (int i = 0; i < commands.size(); i += 1) {
+      ScriptCommand command = commands.get(i);
+      Set<Integer> after = new LinkedHashSet<>();
+      if (command.isBarrier() || command.getWrites().stream().anyMatch(
+          write -> !ScriptCommand.isName(write))) {
+        for (int earlier = 0; earlier < i; earlier += 1) {
+          after.add(earlier);
+        }
+      }
+      for (String read : command.getReads()) {
+        Integer writer = lastWriter.get(read);
+        if (writer != null) {
+          after.add(writer);
+        }
+        readers.computeIfAbsent(read, key -> new ArrayList<>()).add(i);
+      }
+      for (String write : command.getWrites()) {
+        Integer writer = lastWriter.get(write);
+        if (writer != null) {
+          after.add(writer);
+        }
+        List<Integer> since = readers.remove(write);
+        if (since != null) {
+          after.addAll(since);
+        }
+        lastWriter.put(write, i);
+      }
+      after.remove(i);
+      dependencies.add(after);
+    }
+    return dependencies;
+  }
+
+  /**
+   * Runs the script
+   * @param threads number of commands to run at once
+   * @throws IOException if a command fails to load or save an image
+   */
+  private void run(int threads) throws IOException {
+    if (threads == 1) {
+      // script order already puts every command after the ones it depends on
+      for (int i = 0; i < this.commands.size(); i += 1) {
+        this.runCommand(i);
+      }
+    } else {
+      List<Set<Integer>> dependencies = dependencies(this.commands);
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try {
+        for (int i = 0; i < this.commands.size(); i += 1) {
+          int index = i;
+          CompletableFuture<?>[] before = dependencies.get(i).stream().map(futures::get)
+              .toArray(CompletableFuture<?>[]::new);
+          futures.add(CompletableFuture.allOf(before)
+              .thenRunAsync(() -> this.runCommand(index), pool));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+      } finally {
+        pool.shutdown();
+      }
+    }
+    if (this.failure != null) {
+      rethrow(this.failure);
+    }
+  }
+
+  /**
+   * Runs one command, once the commands it depends on are done, unless a command before it in
+   * the script has failed
+   * @param index index of the command
+   */
+  private void runCommand(int index) {
+    boolean failure = true;
+    try {
+      if (!this.failedBefore(index)) {
+        this.messages[index] = this.commands.get(index).run(this.model);
+        failure = false;
+      }
+    } catch (IOException | RuntimeException | Error e) {
+      this.failed(index, e);
+    } finally {
+      this.finished(index, failure);
+    }
+  }
+
+  /**
+   * Checks if a command before the given one in the script has failed
+   * @param index index of a command
+   * @return true if one has, so the command mustn't start
+   */
+  private synchronized boolean failedBefore(int index) {
+    return this.firstFailure < index;
+  }
+
+  /**
+   * Records that a command failed, keeping what the first failing command in the script threw
+   * @param index index of the command
+   * @param cause what it threw
+   */
+  private synchronized void failed(int index, Throwable cause) {
+    if (index < this.firstFailure) {
+      this.firstFailure = index;
+      this.failure = cause;
+    }
+  }
+
+  /**
+   * Records that a command is done and prints every command's output that can now be printed
+   * in order, stopping for good at the first failed command
+   * @param index index of the command
+   * @param failure true if it failed or didn't run because a command before it failed
+   */
+  private synchronized void finished(int index, boolean failure) {
+    this.done[index] = true;
+    this.failed[index] = failure;
+    while (this.printed < this.commands.size() && this.done[this.printed]) {
+      this.out.println(this.prompt);
+      if (this.failed[this.printed]) {
+        // nothing after a failure is printed, as if the script had stopped there
+        this.printed = this.commands.size();
+        return;
+      }
+      if (this.messages[this.printed] != null) {
+        this.out.println(this.messages[this.printed]);
+      }
+      this.printed += 1;
+    }
+  }
+
+  /**
+   * Throws what a failed command threw
+   * @param cause what the command threw
+   * @throws IOException if the command failed to load or save an image
+   */
+  private static void rethrow(Throwable cause) throws IOException {
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new CompletionException(cause);
+  }
+}
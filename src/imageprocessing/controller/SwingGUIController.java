@@ -1,19 +1,65 @@
 package imageprocessing.controller;
 
+import imageprocessing.model.Cancellation;
 import imageprocessing.model.ImageProcessingModel;
+import imageprocessing.model.ImagePyramid;
+import imageprocessing.model.ImageStatistics;
 import imageprocessing.view.ImageProcessingGUIView;
+import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
- * Controller for Swing GUI View representation of Image Processing editor
+ * Controller for Swing GUI View representation of Image Processing editor.
+ *
+ * Features methods are called on the event dispatch thread and return right away: the model
+ * work (the operation itself, rendering the result, and its histogram) runs on a single
+ * background worker thread, and the view is updated back on the event dispatch thread once it
+ * is done. The model is only ever used from the worker, so it needs no locking.
+ *
+ * Every operation runs, in the order it was asked for, as if each click waited for the one
+ * before it. An edit reads the result of the edit before it, which the worker keeps track of,
+ * rather than the working image the view shows, which may not have caught up yet: clicking
+ * brighten three times brightens three times. Recording an edit is cheap because the model
+ * doesn't compute an image until something reads it, so only the newest result is rendered
+ * and shown. A result still rendering when a newer one is asked for is given up on between
+ * tiles or rows, and its rendering is never shown. Uploads and saves always read or write the
+ * file the user chose.
+ *
+ * In preview mode every edit is also made to a proxy of its image, downscaled to fit the
+ * display, and only the proxy is rendered and shown. The same edit is made to the full
+ * resolution image too, but that only records the chain of operations; it runs at full
+ * resolution when the image is saved, or shown with render full.
  */
 public class SwingGUIController implements Features {
+  // appended to a name ID to name its proxy; the view never shows or asks for these names
+  private static final String PROXY = "#proxy";
 
   private final ImageProcessingModel model;
   private ImageProcessingGUIView view;
+  // runs every model operation, one at a time in the order they were asked for
+  private final ExecutorService worker;
+  // number of the latest operation asked for that shows an image; only its result is shown
+  private final AtomicLong latest;
+  // operations started and not finished yet, used only on the event dispatch thread
+  private int outstanding;
+  // true to edit proxies, used only on the event dispatch thread
+  private boolean preview;
+  // full resolution name IDs whose proxy is up to date, used only on the worker thread
+  private final Set<String> proxies;
+  // name ID of the image the next edit reads: the latest result uploaded, reset to, or edited
+  // into, or null before the first. Used only on the worker thread
+  private String head;
 
   /**
    * Takes in model to communicate with
@@ -21,6 +67,13 @@ public class SwingGUIController implements Features {
    */
   public SwingGUIController(ImageProcessingModel model) {
     this.model = model;
+    this.worker = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "image-processing-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.latest = new AtomicLong();
+    this.proxies = new HashSet<>();
   }
 
   @Override
@@ -31,50 +84,42 @@ public class SwingGUIController implements Features {
 
   @Override
   public void flipImage(boolean horizontal, String nameID) {
-    String destNameID = nameID + "Flip" + (horizontal ? "H" : "V");
-    this.model.flip(horizontal, nameID, destNameID);
-    this.view.setImageDisplay(this.model.getImage(destNameID));
-    this.view.setWorkingNameID(destNameID);
-    this.view.setHistogram(this.model.getImage(destNameID));
+    this.edit("flip", nameID, "Flip" + (horizontal ? "H" : "V"),
+        (src, dest) -> this.model.flip(horizontal, src, dest));
   }
 
   @Override
   public void brighten(int increment, String nameID) {
-    String destNameID = nameID + (increment < 0 ? "Dark" : "Bright");
-    this.model.brighten(increment, nameID, destNameID);
-    this.view.setImageDisplay(this.model.getImage(destNameID));
-    this.view.setWorkingNameID(destNameID);
-    this.view.setHistogram(this.model.getImage(destNameID));
+    this.edit(increment < 0 ? "darken" : "brighten", nameID, increment < 0 ? "Dark" : "Bright",
+        (src, dest) -> this.model.brighten(increment, src, dest));
   }
 
   @Override
   public void componentVisual(String component, String nameID) {
-    String destNameID = nameID + component.toUpperCase();
-    switch (component) {
-      case "red":
-      case "green":
-      case "blue":
-        this.model.rgb(component, nameID, destNameID);
-        break;
-      case "intensity":
-        this.model.intensity(nameID, destNameID);
-        break;
-      case "value":
-        this.model.value(nameID, destNameID);
-        break;
-      case "luma":
-        double[][] matrix = new double[3][3];
-        for (int i = 0; i < 3; i++) {
-          matrix[i][0] = 0.2126;
-          matrix[i][1] = 0.7152;
-          matrix[i][2] = 0.0722;
-        }
-        this.model.colorTransform(matrix, nameID, destNameID);
-        break;
-    }
-    this.view.setImageDisplay(this.model.getImage(destNameID));
-    this.view.setWorkingNameID(destNameID);
-    this.view.setHistogram(this.model.getImage(destNameID));
+    this.edit(component, nameID, component.toUpperCase(), (src, dest) -> {
+      switch (component) {
+        case "red":
+        case "green":
+        case "blue":
+          this.model.rgb(component, src, dest);
+          break;
+        case "intensity":
+          this.model.intensity(src, dest);
+          break;
+        case "value":
+          this.model.value(src, dest);
+          break;
+        case "luma":
+          double[][] matrix = new double[3][3];
+          for (int i = 0; i < 3; i++) {
+            matrix[i][0] = 0.2126;
+            matrix[i][1] = 0.7152;
+            matrix[i][2] = 0.0722;
+          }
+          this.model.colorTransform(matrix, src, dest);
+          break;
+      }
+    });
   }
 
   @Override
@@ -85,10 +130,8 @@ public class SwingGUIController implements Features {
       matrix[i][1] = 0.7152;
       matrix[i][2] = 0.0722;
     }
-    this.model.colorTransform(matrix, nameID, nameID+"Greyscale");
-    this.view.setImageDisplay(this.model.getImage(nameID+"Greyscale"));
-    this.view.setWorkingNameID(nameID+"Greyscale");
-    this.view.setHistogram(this.model.getImage(nameID+"Greyscale"));
+    this.edit("greyscale", nameID, "Greyscale",
+        (src, dest) -> this.model.colorTransform(matrix, src, dest));
   }
 
   @Override
@@ -103,10 +146,8 @@ public class SwingGUIController implements Features {
     matrix[2][0] = .0625;
     matrix[2][1] = 0.125;
     matrix[2][2] = .0625;
-    this.model.filter(matrix, nameID, nameID+"Blur");
-    this.view.setImageDisplay(this.model.getImage(nameID+"Blur"));
-    this.view.setWorkingNameID(nameID+"Blur");
-    this.view.setHistogram(this.model.getImage(nameID+"Blur"));
+    this.edit("blur", nameID, "Blur",
+        (src, dest) -> this.model.filter(matrix, src, dest));
   }
 
   @Override
@@ -137,10 +178,8 @@ public class SwingGUIController implements Features {
     matrix[4][2] = -0.125;
     matrix[4][3] = -0.125;
     matrix[4][4] = -0.125;
-    this.model.filter(matrix, nameID, nameID+"Sharpen");
-    this.view.setImageDisplay(this.model.getImage(nameID+"Sharpen"));
-    this.view.setWorkingNameID(nameID+"Sharpen");
-    this.view.setHistogram(this.model.getImage(nameID+"Sharpen"));
+    this.edit("sharpen", nameID, "Sharpen",
+        (src, dest) -> this.model.filter(matrix, src, dest));
   }
 
   @Override
@@ -155,38 +194,36 @@ public class SwingGUIController implements Features {
     matrix[2][0] = 0.272;
     matrix[2][1] = 0.534;
     matrix[2][2] = 0.131;
-    this.model.colorTransform(matrix, nameID, nameID+"Sepia");
-    this.view.setImageDisplay(this.model.getImage(nameID+"Sepia"));
-    view.setWorkingNameID(nameID+"Sepia");
-    this.view.setHistogram(this.model.getImage(nameID+"Sepia"));
+    this.edit("sepia", nameID, "Sepia",
+        (src, dest) -> this.model.colorTransform(matrix, src, dest));
   }
 
   @Override
   public void uploadImage() throws IOException {
     final JFileChooser fchooser = new JFileChooser("/res");
     FileNameExtensionFilter filter = new FileNameExtensionFilter(
-        "JPG, PNG, PPM, and BMP images", "jpg", "png", "ppm", "bmp");
+        "JPG, PNG, PPM, PGM, and BMP images", "jpg", "png", "ppm", "pgm", "bmp");
     fchooser.setFileFilter(filter);
     int retvalue = fchooser.showOpenDialog(null);
     if (retvalue == JFileChooser.APPROVE_OPTION) {
       File f = fchooser.getSelectedFile();
       String path = f.getAbsolutePath();
       String nameID = path.substring(path.lastIndexOf("/")+1, path.lastIndexOf("."));
-      String type = path.substring(path.lastIndexOf(".")+1);
-      view.setOpenFile(path, nameID);
-      view.setWorkingNameID(nameID);
-      switch (type.toLowerCase()) {
-        case "ppm":
-          this.model.loadImage(path, nameID);
-          break;
-        default:
-          this.model.imageToArray(path, nameID);
-          break;
-      }
-      view.setImageDisplay(this.model.getImage(nameID));
-      view.setMessage("Any alerts will show up here");
-      view.setHistogram(this.model.getImage(nameID));
-      view.setWorkingNameID(nameID);
+      boolean preview = this.preview;
+      Dimension size = this.view.getDisplaySize();
+      BooleanSupplier current = this.newest();
+      this.submit("upload image", () -> {
+        this.model.openImage(path, nameID);
+        this.head = nameID;
+        this.proxies.remove(nameID);
+        Runnable show = preview ? this.showProxy(nameID, size, current)
+            : this.show(nameID, nameID, current);
+        return () -> {
+          view.setOpenFile(path, nameID);
+          view.setMessage("Any alerts will show up here");
+          show.run();
+        };
+      });
     }
   }
 
@@ -197,25 +234,263 @@ public class SwingGUIController implements Features {
       if (retvalue == JFileChooser.APPROVE_OPTION) {
         File f = fchooser.getSelectedFile();
         String path = f.getAbsolutePath();
-        try {
-          this.model.saveImage(path, nameID);
-          this.view.setSaveFile(path, nameID);
-        } catch (NullPointerException e) {
-          throw new IllegalArgumentException("no images loaded");
-        }
+        this.submit("save image", this.onWorking(nameID, working -> {
+          this.model.saveImage(path, working);
+          return () -> this.view.setSaveFile(path, working);
+        }));
 
       }
   }
 
   @Override
   public void reset(String nameID) {
-    this.view.setImageDisplay(this.model.getImage(nameID));
-    this.view.setWorkingNameID(nameID);
-    this.view.setHistogram(this.model.getImage(nameID));
+    boolean preview = this.preview;
+    Dimension size = this.view.getDisplaySize();
+    BooleanSupplier current = this.newest();
+    this.submit("reset", () -> this.requiring(nameID, original -> {
+      this.head = original;
+      return preview ? this.showProxy(original, size, current)
+          : this.show(original, original, current);
+    }));
+  }
+
+  @Override
+  public void setPreview(boolean preview, String nameID) {
+    this.preview = preview;
+    Dimension size = this.view.getDisplaySize();
+    BooleanSupplier current = this.newest();
+    this.submit(preview ? "preview" : "full resolution", () -> {
+      String working = this.working(nameID);
+      if (!this.model.existingID(working)) {
+        return () -> { };
+      }
+      return preview ? this.showProxy(working, size, current)
+          : this.show(working, working, current);
+    });
+  }
+
+  @Override
+  public void renderFull(String nameID) {
+    BooleanSupplier current = this.newest();
+    this.submit("render full",
+        this.onWorking(nameID, working -> this.show(working, working, current)));
   }
 
   @Override
   public void exitProgram() {
     System.exit(0);
   }
+
+  /**
+   * Makes the operation about to be asked for the newest one showing an image, so the result
+   * of every operation before it is no longer wanted. Must be called on the event dispatch
+   * thread
+   * @return true, from any thread, until a newer operation showing an image is asked for
+   */
+  private BooleanSupplier newest() {
+    long ticket = this.latest.incrementAndGet();
+    return () -> ticket == this.latest.get();
+  }
+
+  /**
+   * Queues an operation on the worker thread after every operation asked for before it, and
+   * shows progress until it finishes. Progress is hidden once every operation started has
+   * finished, even if one fails with an error. Must be called on the event dispatch thread
+   * @param operation name of the operation, shown while it runs
+   * @param task model work to run, returning the view update to make with its result
+   */
+  private void submit(String operation, Operation task) {
+    this.outstanding += 1;
+    this.view.showProgress(operation);
+    this.worker.submit(() -> {
+      Runnable update = null;
+      try {
+        update = task.run();
+      } catch (IOException | RuntimeException e) {
+        update = () -> this.view.setMessage("Unable to " + operation);
+      } finally {
+        Runnable result = update;
+        SwingUtilities.invokeLater(() -> {
+          if (result != null) {
+            result.run();
+          }
+          this.finished();
+        });
+      }
+    });
+  }
+
+  /**
+   * Counts an operation as finished, hiding progress once none are left. Must be called on the
+   * event dispatch thread
+   */
+  private void finished() {
+    this.outstanding -= 1;
+    if (this.outstanding == 0) {
+      this.view.hideProgress();
+    }
+  }
+
+  /**
+   * Gets the name ID of the image the next edit reads. Runs on the worker thread
+   * @param nameID working image the view showed when the operation was asked for, used until
+   *     an image has been uploaded
+   * @return name ID of the latest result
+   */
+  private String working(String nameID) {
+    return this.head == null ? nameID : this.head;
+  }
+
+  /**
+   * Wraps model work on the working image, resolved when the work runs, so it reads the result
+   * of every edit asked for before it
+   * @param nameID working image the view showed when the operation was asked for
+   * @param task model work to run on the working image
+   * @return model work that finds the working image and checks it exists first
+   */
+  private Operation onWorking(String nameID, Work task) {
+    return () -> this.requiring(this.working(nameID), task);
+  }
+
+  /**
+   * Runs model work only if the image it reads exists, telling the user otherwise. Runs on the
+   * worker thread
+   * @param nameID name ID of image the work reads
+   * @param task model work to run
+   * @return view update to make with the result
+   * @throws IOException if reading or writing a file fails
+   */
+  private Runnable requiring(String nameID, Work task) throws IOException {
+    if (!this.model.existingID(nameID)) {
+      return () -> this.view.setMessage("Image hasn't been uploaded yet");
+    }
+    return task.run(nameID);
+  }
+
+  /**
+   * Starts an edit that reads the working image and writes a new one named after it. In preview
+   * mode the edit is made both to the full resolution images, which the model only records
+   * until they are needed, and to their proxies, which are rendered and shown
+   * @param operation name of the operation, shown while it runs
+   * @param nameID working image the view shows
+   * @param suffix appended to the working image's name ID to name the edited image
+   * @param edit model operation making the edit
+   */
+  private void edit(String operation, String nameID, String suffix, Edit edit) {
+    boolean preview = this.preview;
+    Dimension size = this.view.getDisplaySize();
+    BooleanSupplier current = this.newest();
+    this.submit(operation, this.onWorking(nameID, working -> {
+      String destNameID = working + suffix;
+      edit.apply(working, destNameID);
+      this.head = destNameID;
+      if (!preview) {
+        this.proxies.remove(destNameID);
+        return this.show(destNameID, destNameID, current);
+      }
+      this.proxy(working, size);
+      edit.apply(working + PROXY, destNameID + PROXY);
+      this.proxies.add(destNameID);
+      return this.show(destNameID, destNameID + PROXY, current);
+    }));
+  }
+
+  /**
+   * Makes sure an image's proxy is up to date, downscaling the image to fit the given size if
+   * it isn't. Runs on the worker thread
+   * @param nameID name ID of full resolution image
+   * @param size size the proxy has to fit in
+   */
+  private void proxy(String nameID, Dimension size) {
+    if (this.proxies.contains(nameID)) {
+      return;
+    }
+    int width = this.model.getWidth(nameID);
+    int height = this.model.getHeight(nameID);
+    double scale = Math.min(1, Math.min((double) size.width / width,
+        (double) size.height / height));
+    this.model.downscale(Math.max(1, (int) Math.round(width * scale)),
+        Math.max(1, (int) Math.round(height * scale)), nameID, nameID + PROXY);
+    this.proxies.add(nameID);
+  }
+
+  /**
+   * Renders an image's proxy, its pyramid, and its histogram, on the worker thread
+   * @param nameID name ID of full resolution image
+   * @param size size the proxy has to fit in
+   * @param current true while the result is still wanted
+   * @return view update showing the proxy, with the full resolution image as the working image
+   */
+  private Runnable showProxy(String nameID, Dimension size, BooleanSupplier current) {
+    this.proxy(nameID, size);
+    return this.show(nameID, nameID + PROXY, current);
+  }
+
+  /**
+   * Renders an image, its pyramid, and its histogram, on the worker thread, unless a newer
+   * result is wanted instead. Rendering stops partway through if one is asked for meanwhile
+   * @param nameID name ID to show as the working image
+   * @param shownNameID name ID of image to display, either nameID or its proxy
+   * @param current true while the result is still wanted
+   * @return view update showing the image, or doing nothing if a newer result is wanted
+   */
+  private Runnable show(String nameID, String shownNameID, BooleanSupplier current) {
+    ImagePyramid pyramid;
+    ImageStatistics statistics;
+    try {
+      pyramid = Cancellation.whileWanted(current, () -> this.model.getPyramid(shownNameID));
+      statistics = Cancellation.whileWanted(current,
+          () -> this.model.getStatistics(shownNameID));
+    } catch (CancellationException e) {
+      // a newer result is on its way, so there is nothing to show
+      return () -> { };
+    }
+    return () -> {
+      if (current.getAsBoolean()) {
+        this.view.setImageDisplay(pyramid);
+        this.view.setWorkingNameID(nameID);
+        this.view.setHistogram(statistics);
+      }
+    };
+  }
+
+  /**
+   * Model operation reading one image and writing another
+   */
+  private interface Edit {
+
+    /**
+     * Makes the edit
+     * @param nameID name ID of image to edit
+     * @param destNameID name ID to write the edited image to
+     */
+    void apply(String nameID, String destNameID);
+  }
+
+  /**
+   * Model work done on the worker thread on one image
+   */
+  private interface Work {
+
+    /**
+     * Runs the work on the model
+     * @param nameID name ID of the image to work on, which exists
+     * @return view update to make on the event dispatch thread once the work is done
+     * @throws IOException if reading or writing a file fails
+     */
+    Runnable run(String nameID) throws IOException;
+  }
+
+  /**
+   * Model work done on the worker thread for one operation
+   */
+  private interface Operation {
+
+    /**
+     * Runs the operation on the model
+     * @return view update to make on the event dispatch thread once the operation is done
+     * @throws IOException if reading or writing a file fails
+     */
+    Runnable run() throws IOException;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package imageprocessing.model;
+
+/**
+ * Number format used to compute weighted sums of channel values in filter and colorTransform
+ */
+public enum Arithmetic {
+  /**
+   * Fixed point when every weight is exactly representable in it, giving the same result as
+   * floating point, and floating point otherwise
+   */
+  AUTO,
+  /**
+   * Double precision accumulation, truncated and clamped at the end
+   */
+  FLOATING_POINT,
+  /**
+   * Weights rounded to 16.16 fixed point and accumulated as integers. Weights that are multiples
+   * of 1/65536 (such as the blur and sharpen kernels) give exactly the floating point result;
+   * otherwise each channel can differ from it by at most ceil(taps * 255 / 131072), which is 1
+   * for any kernel or color matrix with up to 514 weights
+   */
+  FIXED_POINT
+}
@@ -0,0 +1,127 @@
+package imageprocessing.model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Converts between AWT images and packed images without going pixel by pixel. Decoded images
+ * are read from their rasters in bulk instead of calling getRGB once per pixel: images that
+ * already hold one 0xRRGGBB int per pixel have their array taken over as is, 8-bit BGR and ABGR
+ * images are converted straight from their byte arrays, and every other type is converted with a
+ * single bulk getRGB call, so the result always matches what per-pixel getRGB would give. Packed
+ * images are exported by wrapping their array in an RGB raster, so nothing is copied at all
+ */
+final class BufferedImages {
+  private static final DirectColorModel RGB = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+
+  private BufferedImages() {
+  }
+
+  /**
+   * Converts an image to a packed image, dropping any alpha. The packed image may take over the
+   * image's pixel array, so the image must not be used afterwards
+   * @param image image to convert
+   * @return packed image with the same colors
+   */
+  static PackedImage toPacked(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    Raster raster = image.getRaster();
+    boolean untranslated = raster.getSampleModelTranslateX() == 0
+        && raster.getSampleModelTranslateY() == 0;
+    switch (image.getType()) {
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+        if (untranslated && raster.getDataBuffer().getOffset() == 0) {
+          return adoptInts(raster, width, height);
+        }
+        break;
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        if (untranslated) {
+          return convertBytes(raster, width, height);
+        }
+        break;
+      default:
+        break;
+    }
+    int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    for (int i = 0; i < pixels.length; i += 1) {
+      pixels[i] &= 0xFFFFFF;
+    }
+    return new PackedImage(width, height, width, pixels);
+  }
+
+  /**
+   * Takes over the int array of an RGB or non-premultiplied ARGB raster, clearing alpha in place
+   * @param raster raster with one packed pixel per int
+   * @param width width of image
+   * @param height height of image
+   * @return packed image backed by the raster's array
+   */
+  private static PackedImage adoptInts(Raster raster, int width, int height) {
+    int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+    int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+    for (int h = 0; h < height; h += 1) {
+      int row = h * stride;
+      for (int w = 0; w < width; w += 1) {
+        pixels[row + w] &= 0xFFFFFF;
+      }
+    }
+    return new PackedImage(width, height, stride, pixels);
+  }
+
+  /**
+   * Packs the samples of an 8-bit interleaved sRGB raster, with or without alpha
+   * @param raster raster with one byte per sample
+   * @param width width of image
+   * @param height height of image
+   * @return new packed image
+   */
+  private static PackedImage convertBytes(Raster raster, int width, int height) {
+    ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+    byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+    int[] bands = model.getBandOffsets();
+    int base = raster.getDataBuffer().getOffset();
+    int scanline = model.getScanlineStride();
+    int step = model.getPixelStride();
+    PackedImage packed = new PackedImage(width, height);
+    int[] pixels = packed.getPixels();
+    for (int h = 0; h < height; h += 1) {
+      int in = base + h * scanline;
+      int out = h * width;
+      for (int w = 0; w < width; w += 1, in += step) {
+        pixels[out + w] = PackedImage.pack(data[in + bands[0]] & 0xFF,
+            data[in + bands[1]] & 0xFF, data[in + bands[2]] & 0xFF);
+      }
+    }
+    return packed;
+  }
+
+  /**
+   * Wraps a packed image in a TYPE_INT_RGB buffered image sharing its pixel array, so drawing it
+   * or reading it shows the packed image's pixels with no copy. Views whose rows aren't stored
+   * top to bottom, left to right (like flips) are copied once first. The buffered image must not
+   * be changed, since that would change the packed image too
+   * @param image image to wrap
+   * @return buffered image backed by the same pixels
+   */
+  static BufferedImage toBufferedImage(PackedImage image) {
+    PackedImage rows = image.getPixelStride() == 1 && image.getStride() >= image.getWidth()
+        ? image : image.compact();
+    int[] pixels = rows.getPixels();
+    DataBuffer buffer = new DataBufferInt(pixels, pixels.length - rows.getOffset(),
+        rows.getOffset());
+    SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT,
+        rows.getWidth(), rows.getHeight(), rows.getStride(), RGB.getMasks());
+    WritableRaster raster = Raster.createWritableRaster(model, buffer, null);
+    return new BufferedImage(RGB, raster, false, null);
+  }
+}
@@ -0,0 +1,65 @@
+package imageprocessing.model;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Lets the thread reading an image give up on rendering it partway through once the result is
+ * no longer wanted. The thread makes the read inside whileWanted with a check; renders run that
+ * check before each operation and between the tiles, rows, or levels of long ones, on whichever
+ * thread does the work, and throw a CancellationException once it fails. An image whose render
+ * is given up on is left as if it had never been read, so the next read renders it from the
+ * start.
+ */
+public final class Cancellation {
+  // check of the read the current thread is making, or null if it can't be given up on
+  private static final ThreadLocal<BooleanSupplier> WANTED = new ThreadLocal<>();
+
+  /**
+   * Not instantiable
+   */
+  private Cancellation() {
+  }
+
+  /**
+   * Reads images, giving up on rendering them as soon as the given check fails
+   * @param wanted true while the result is still wanted; called from any thread
+   * @param read work reading images from a model
+   * @param <T> result of the work
+   * @return what the work returned
+   * @throws CancellationException if the check failed while rendering
+   */
+  public static <T> T whileWanted(BooleanSupplier wanted, Supplier<T> read) {
+    BooleanSupplier outer = WANTED.get();
+    WANTED.set(wanted);
+    try {
+      return read.get();
+    } finally {
+      if (outer == null) {
+        WANTED.remove();
+      } else {
+        WANTED.set(outer);
+      }
+    }
+  }
+
+  /**
+   * Gets the check of the read the current thread is making, to pass to threads helping with it
+   * @return check, or null if the read can't be given up on
+   */
+  static BooleanSupplier current() {
+    return WANTED.get();
+  }
+
+  /**
+   * Gives up on a render if its result is no longer wanted
+   * @param wanted check given by current, or null
+   * @throws CancellationException if the check fails
+   */
+  static void check(BooleanSupplier wanted) {
+    if (wanted != null && !wanted.getAsBoolean()) {
+      throw new CancellationException("render no longer wanted");
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package imageprocessing.model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A per-channel point operation stored as three 256-entry lookup tables, one each for red,
+ * green, and blue. Applying it to a pixel is three table reads with no arithmetic or clamping,
+ * and two of them can be composed into one that costs the same as either.
+ */
+public final class ChannelLut {
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  /**
+   * Creates a lookup table from the given per-channel tables
+   * @param red 256 red outputs, each 0-255
+   * @param green 256 green outputs, each 0-255
+   * @param blue 256 blue outputs, each 0-255
+   */
+  private ChannelLut(int[] red, int[] green, int[] blue) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  /**
+   * Creates a lookup table with a separate table for each channel. Entries are clamped to 0-255
+   * @param red 256 red outputs
+   * @param green 256 green outputs
+   * @param blue 256 blue outputs
+   * @return new lookup table
+   */
+  public static ChannelLut of(int[] red, int[] green, int[] blue) {
+    return new ChannelLut(copy(red), copy(green), copy(blue));
+  }
+
+  /**
+   * Creates a lookup table applying the same function to every channel. Outputs are clamped to
+   * 0-255
+   * @param curve function from an input channel value (0-255) to an output channel value
+   * @return new lookup table
+   */
+  public static ChannelLut of(IntUnaryOperator curve) {
+    int[] table = new int[256];
+    for (int v = 0; v < 256; v += 1) {
+      table[v] = PackedImage.clamp(curve.applyAsInt(v));
+    }
+    return new ChannelLut(table, table, table);
+  }
+
+  /**
+   * Lookup table that leaves every pixel unchanged
+   * @return identity lookup table
+   */
+  public static ChannelLut identity() {
+    return of(v -> v);
+  }
+
+  /**
+   * Lookup table adding the given increment to every channel, clamped to 0-255, as brighten does
+   * @param increment increment to add (negative to darken)
+   * @return brighten lookup table
+   */
+  public static ChannelLut brighten(int increment) {
+    return of(v -> v + increment);
+  }
+
+  /**
+   * Levels adjustment: maps black to 0 and white to 255, stretching values between them with
+   * the given gamma (1 is linear, above 1 brightens midtones) and clipping values outside them
+   * @param black input value mapped to 0
+   * @param gamma midtone gamma, greater than 0
+   * @param white input value mapped to 255, greater than black
+   * @return levels lookup table
+   */
+  public static ChannelLut levels(int black, double gamma, int white) {
+    if (black < 0 || white > 255 || black >= white || !(gamma > 0)) {
+      throw new IllegalArgumentException("invalid levels");
+    }
+    return of(v -> {
+      double t = Math.max(0, Math.min(1, (v - black) / (double) (white - black)));
+      return (int) Math.round(255 * Math.pow(t, 1 / gamma));
+    });
+  }
+
+  /**
+   * Curve through the given control points, linearly interpolated between them and held flat
+   * outside them
+   * @param inputs input values of the control points, strictly increasing, each 0-255
+   * @param outputs output values of the control points, each 0-255
+   * @return curve lookup table
+   */
+  public static ChannelLut curve(int[] inputs, int[] outputs) {
+    if (inputs.length == 0 || inputs.length != outputs.length) {
+      throw new IllegalArgumentException("curve needs matching, non-empty control points");
+    }
+    for (int i = 0; i < inputs.length; i += 1) {
+      if (inputs[i] < 0 || inputs[i] > 255 || (i > 0 && inputs[i] <= inputs[i - 1])) {
+        throw new IllegalArgumentException("curve inputs must be increasing values in 0-255");
+      }
+    }
+    return of(v -> {
+      if (v <= inputs[0]) {
+        return outputs[0];
+      }
+      for (int i = 1; i < inputs.length; i += 1) {
+        if (v <= inputs[i]) {
+          double t = (v - inputs[i - 1]) / (double) (inputs[i] - inputs[i - 1]);
+          return (int) Math.round(outputs[i - 1] + t * (outputs[i] - outputs[i - 1]));
+        }
+      }
+      return outputs[outputs.length - 1];
+    });
+  }
+
+  /**
+   * Composes this lookup table with another, giving one that applies this one first
+   * @param next lookup table to apply after this one
+   * @return composed lookup table
+   */
+  public ChannelLut then(ChannelLut next) {
+    int[] r = new int[256];
+    int[] g = new int[256];
+    int[] b = new int[256];
+    for (int v = 0; v < 256; v += 1) {
+      r[v] = next.red[this.red[v]];
+      g[v] = next.green[this.green[v]];
+      b[v] = next.blue[this.blue[v]];
+    }
+    return new ChannelLut(r, g, b);
+  }
+
+  /**
+   * Gives a lookup table that applies one of this one's channel tables to every channel
+   * @param channel 0 for red, 1 for green, 2 for blue
+   * @return lookup table with that channel's table on all three channels
+   */
+  ChannelLut broadcast(int channel) {
+    int[] table = channel == 0 ? this.red : channel == 1 ? this.green : this.blue;
+    return new ChannelLut(table, table, table);
+  }
+
+  /**
+   * Applies this lookup table to one packed pixel
+   * @param rgb packed 0xRRGGBB value
+   * @return packed result
+   */
+  public int apply(int rgb) {
+    return PackedImage.pack(this.red[PackedImage.red(rgb)], this.green[PackedImage.green(rgb)],
+        this.blue[PackedImage.blue(rgb)]);
+  }
+
+  /**
+   * Gets the output of one channel's table
+   * @param channel 0 for red, 1 for green, 2 for blue
+   * @param value input value, 0-255
+   * @return output value, 0-255
+   */
+  public int get(int channel, int value) {
+    switch (channel) {
+      case 0:
+        return this.red[value];
+      case 1:
+        return this.green[value];
+      case 2:
+        return this.blue[value];
+      default:
+        throw new IllegalArgumentException("channel must be 0, 1, or 2");
+    }
+  }
+
+  /**
+   * Applies this lookup table to every pixel of an image
+   * @param src image to map
+   * @return new mapped image
+   */
+  PackedImage apply(PackedImage src) {
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight());
+    int[] in = src.getPixels();
+    int[] out = dest.getPixels();
+    int step = src.getPixelStride();
+    int[] r = this.red;
+    int[] g = this.green;
+    int[] b = this.blue;
+    for (int height = 0; height < src.getHeight(); height += 1) {
+      int srcPixel = src.getOffset() + height * src.getStride();
+      int destRow = height * dest.getStride();
+      for (int width = 0; width < src.getWidth(); width += 1) {
+        int rgb = in[srcPixel];
+        srcPixel += step;
+        out[destRow + width] = (r[(rgb >> 16) & 0xFF] << 16) | (g[(rgb >> 8) & 0xFF] << 8)
+            | b[rgb & 0xFF];
+      }
+    }
+    return dest;
+  }
+
+  /**
+   * Copies a 256-entry table, clamping each entry to 0-255
+   * @param table table to copy
+   * @return clamped copy
+   */
+  private static int[] copy(int[] table) {
+    if (table.length != 256) {
+      throw new IllegalArgumentException("lookup tables must have 256 entries");
+    }
+    int[] copy = new int[256];
+    for (int v = 0; v < 256; v += 1) {
+      copy[v] = PackedImage.clamp(table[v]);
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,258 @@
+package imageprocessing.model;
+
+/**
+ * A 3x3 color matrix compiled into nine 256-entry tables, one per coefficient, holding that
+ * coefficient times every possible channel value as a fixed point integer. Transforming a pixel
+ * is nine table reads and six integer additions per pixel, with no floating point math.
+ *
+ * An exact matrix keeps 32 fractional bits, so its table sums are within 2^-30 of the true
+ * product. A sum that far from a whole number truncates the same way as the double
+ * computation colorTransform has always done. A sum closer than that is recomputed in double,
+ * so results are bit-identical to the floating point path. A fixed matrix keeps 16 fractional
+ * bits and never falls back, as documented for Arithmetic.FIXED_POINT. Coefficients too large
+ * for either table type are computed in double.
+ *
+ * A lookup table run just before the matrix is folded into its tables and one run just after it
+ * is applied to its clamped result, so a brighten on either side of a sepia costs nothing extra
+ * and gives the same pixels as running the operations one at a time.
+ */
+final class ColorMatrix {
+  // largest coefficient magnitude the exact tables handle without overflow or precision loss
+  private static final double EXACT_LIMIT = 1024;
+  // largest coefficient magnitude the fixed tables handle without overflowing an int
+  private static final double FIXED_LIMIT = 127;
+  // sums whose fraction is within this many 2^-32 units of a whole number are recomputed
+  private static final long GUARD = 1L << 8;
+  private static final long FRACTION = (1L << 32) - 1;
+
+  private final double[] matrix;
+  private final boolean useFixed;
+  private final ChannelLut input;
+  private final ChannelLut output;
+  private final long[] exact;
+  private final int[] fixed;
+
+  /**
+   * Compiles the tables for the given coefficients and lookup tables. If a coefficient is too
+   * large for the requested table type neither is built and pixels are computed in double
+   * @param matrix row-major coefficients
+   * @param useFixed true for 16.16 fixed point tables, false for exact ones
+   * @param input lookup table applied to each pixel before the matrix, or null
+   * @param output lookup table applied to each result of the matrix, or null
+   */
+  private ColorMatrix(double[] matrix, boolean useFixed, ChannelLut input, ChannelLut output) {
+    this.matrix = matrix;
+    this.useFixed = useFixed;
+    this.input = input;
+    this.output = output;
+    double limit = useFixed ? FIXED_LIMIT : EXACT_LIMIT;
+    long[] exactTables = useFixed ? null : new long[9 * 256];
+    int[] fixedTables = useFixed ? new int[9 * 256] : null;
+    for (int i = 0; i < 9; i += 1) {
+      if (!(Math.abs(matrix[i]) <= limit)) {
+        exactTables = null;
+        fixedTables = null;
+        break;
+      }
+      for (int v = 0; v < 256; v += 1) {
+        int in = input == null ? v : input.get(i % 3, v);
+        if (useFixed) {
+          fixedTables[i * 256 + v] = (int) Math.round(in * matrix[i] * FixedPoint.ONE);
+        } else {
+          exactTables[i * 256 + v] = Math.round(in * matrix[i] * 0x1p32);
+        }
+      }
+    }
+    this.exact = exactTables;
+    this.fixed = fixedTables;
+  }
+
+  /**
+   * Compiles a matrix for the given arithmetic. Fixed point tables are used for FIXED_POINT, and
+   * for AUTO when every coefficient is exact in fixed point; otherwise results are bit-identical
+   * to the floating point transform
+   * @param matrix 3x3 color matrix
+   * @param arithmetic arithmetic to transform pixels with
+   * @return compiled matrix
+   * @throws IllegalArgumentException if fixed point is requested but a coefficient is too large
+   */
+  static ColorMatrix compile(double[][] matrix, Arithmetic arithmetic) {
+    double[] flat = flat(matrix);
+    boolean useFixed = FixedPoint.useFixed(arithmetic, flat);
+    for (double weight : flat) {
+      if (useFixed && !(Math.abs(weight) <= FIXED_LIMIT)) {
+        if (arithmetic == Arithmetic.FIXED_POINT) {
+          throw new IllegalArgumentException("weights too large for fixed point arithmetic");
+        }
+        useFixed = false;
+      }
+    }
+    return new ColorMatrix(flat, useFixed, null, null);
+  }
+
+  /**
+   * Gives a matrix that applies the given lookup table to each pixel and then this matrix. The
+   * lookup table is folded into the coefficient tables, so it costs nothing per pixel
+   * @param lut lookup table to apply first
+   * @return combined matrix
+   */
+  ColorMatrix after(ChannelLut lut) {
+    ChannelLut combined = this.input == null ? lut : lut.then(this.input);
+    return new ColorMatrix(this.matrix, this.useFixed, combined, this.output);
+  }
+
+  /**
+   * Gives a matrix that applies this matrix and then the given lookup table to its clamped result
+   * @param lut lookup table to apply last
+   * @return combined matrix
+   */
+  ColorMatrix then(ChannelLut lut) {
+    ChannelLut combined = this.output == null ? lut : this.output.then(lut);
+    return new ColorMatrix(this.matrix, this.useFixed, this.input, combined);
+  }
+
+  /**
+   * Gives a matrix producing a grey pixel from one channel of this matrix's result, as
+   * extracting that component after this matrix would. Every row of the new matrix is the
+   * selected row, so each channel is computed exactly as the selected one was
+   * @param channel 0 for red, 1 for green, 2 for blue
+   * @return combined matrix
+   */
+  ColorMatrix select(int channel) {
+    double[] rows = new double[9];
+    for (int row = 0; row < 9; row += 3) {
+      System.arraycopy(this.matrix, channel * 3, rows, row, 3);
+    }
+    return new ColorMatrix(rows, this.useFixed, this.input,
+        this.output == null ? null : this.output.broadcast(channel));
+  }
+
+  /**
+   * Transforms every pixel of an image
+   * @param src image to transform
+   * @return new transformed image
+   */
+  PackedImage apply(PackedImage src) {
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight());
+    int[] in = src.getPixels();
+    int[] out = dest.getPixels();
+    int step = src.getPixelStride();
+    for (int height = 0; height < src.getHeight(); height += 1) {
+      int srcPixel = src.getOffset() + height * src.getStride();
+      int destRow = height * dest.getStride();
+      for (int width = 0; width < src.getWidth(); width += 1) {
+        out[destRow + width] = this.apply(in[srcPixel]);
+        srcPixel += step;
+      }
+    }
+    return dest;
+  }
+
+  /**
+   * Transforms one packed pixel
+   * @param rgb packed 0xRRGGBB value
+   * @return packed result
+   */
+  int apply(int rgb) {
+    int result = this.fixed != null ? this.applyFixed(rgb)
+        : this.exact != null ? this.applyExact(rgb) : this.applyDirect(rgb);
+    return this.output == null ? result : this.output.apply(result);
+  }
+
+  /**
+   * Transforms one packed pixel with the fixed point tables
+   * @param rgb packed 0xRRGGBB value
+   * @return packed result, before the output lookup table
+   */
+  private int applyFixed(int rgb) {
+    int r = PackedImage.red(rgb);
+    int g = PackedImage.green(rgb);
+    int b = PackedImage.blue(rgb);
+    int[] t = this.fixed;
+    long red = (long) t[r] + t[256 + g] + t[512 + b];
+    long green = (long) t[768 + r] + t[1024 + g] + t[1280 + b];
+    long blue = (long) t[1536 + r] + t[1792 + g] + t[2048 + b];
+    return PackedImage.pack(FixedPoint.toChannel(red, FixedPoint.SHIFT),
+        FixedPoint.toChannel(green, FixedPoint.SHIFT),
+        FixedPoint.toChannel(blue, FixedPoint.SHIFT));
+  }
+
+  /**
+   * Transforms one packed pixel with the exact tables
+   * @param rgb packed 0xRRGGBB value
+   * @return packed result, before the output lookup table
+   */
+  private int applyExact(int rgb) {
+    int r = PackedImage.red(rgb);
+    int g = PackedImage.green(rgb);
+    int b = PackedImage.blue(rgb);
+    long[] t = this.exact;
+    return PackedImage.pack(
+        this.channel(t[r] + t[256 + g] + t[512 + b], 0, r, g, b),
+        this.channel(t[768 + r] + t[1024 + g] + t[1280 + b], 3, r, g, b),
+        this.channel(t[1536 + r] + t[1792 + g] + t[2048 + b], 6, r, g, b));
+  }
+
+  /**
+   * Transforms one packed pixel in double, for coefficients too large for the tables
+   * @param rgb packed 0xRRGGBB value
+   * @return packed result, before the output lookup table
+   */
+  private int applyDirect(int rgb) {
+    int r = PackedImage.red(rgb);
+    int g = PackedImage.green(rgb);
+    int b = PackedImage.blue(rgb);
+    return PackedImage.pack(this.direct(0, r, g, b), this.direct(3, r, g, b),
+        this.direct(6, r, g, b));
+  }
+
+  /**
+   * Converts one exact table sum to a channel value, recomputing it in double if it is too close
+   * to a whole number for the tables to decide how it truncates
+   * @param sum table sum with 32 fractional bits
+   * @param row index of the first coefficient of this channel's matrix row
+   * @param r red input
+   * @param g green input
+   * @param b blue input
+   * @return channel value, 0-255
+   */
+  private int channel(long sum, int row, int r, int g, int b) {
+    long fraction = sum & FRACTION;
+    if (fraction < GUARD || fraction > FRACTION - GUARD) {
+      return this.direct(row, r, g, b);
+    }
+    return sum < 0 ? 0 : (int) Math.min(sum >> 32, 255);
+  }
+
+  /**
+   * Computes one channel in double, exactly as colorTransform always has, from the input
+   * lookup table's outputs
+   * @param row index of the first coefficient of this channel's matrix row
+   * @param r red input
+   * @param g green input
+   * @param b blue input
+   * @return channel value, 0-255
+   */
+  private int direct(int row, int r, int g, int b) {
+    if (this.input != null) {
+      r = this.input.get(0, r);
+      g = this.input.get(1, g);
+      b = this.input.get(2, b);
+    }
+    double[] m = this.matrix;
+    return PackedImage.clamp((int) (r * m[row] + g * m[row + 1] + b * m[row + 2]));
+  }
+
+  /**
+   * Flattens a 3x3 matrix into a row-major array
+   * @param matrix matrix to flatten
+   * @return nine coefficients
+   */
+  private static double[] flat(double[][] matrix) {
+    if (matrix.length != 3 || matrix[0].length != 3 || matrix[1].length != 3
+        || matrix[2].length != 3) {
+      throw new IllegalArgumentException("color matrix must be 3x3");
+    }
+    return FixedPoint.flatten(matrix);
+  }
+}
@@ -0,0 +1,745 @@
+package imageprocessing.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Applies square convolution kernels to packed images. The output is cut into tiles which are
+ * run in parallel on a fork/join pool. Pixels far enough from the edge that the whole kernel
+ * lands inside the image are computed without any bounds checks; only the border pixels check
+ * each tap. Every pixel sums its taps in the same order whichever tile or path computes it, so
+ * the result is bit-identical to a sequential pass for any thread count.
+ *
+ * Rank-1 (separable) kernels, such as the Gaussian blur, are detected and run as a horizontal
+ * pass followed by a vertical pass, costing 2k instead of k*k multiplies per pixel for a k*k
+ * kernel. If both factors are dyadic (as every binomial blur is) every product and sum is exact
+ * and the result is identical to the 2D path. Otherwise the two paths round differently, so a
+ * channel can differ by 1 where the exact sum is within rounding error of an integer.
+ */
+final class ConvolutionEngine {
+  // system property holding the default number of threads to filter with
+  static final String THREADS_PROPERTY = "imageprocessing.threads";
+  private static final int TILE_HEIGHT = 32;
+  private static final int TILE_WIDTH = 512;
+  // images with fewer pixels than this are filtered on the calling thread
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  // relative error allowed when checking that a kernel is the outer product of two vectors
+  private static final double SEPARABLE_TOLERANCE = 1e-12;
+
+  // engines over the pool of each size set by the system property, shared by every model
+  private static final Map<Integer, ConvolutionEngine> SHARED = new ConcurrentHashMap<>();
+
+  private final ForkJoinPool pool;
+  // true if the pool was made for this engine alone, so shutting the engine down closes it
+  private final boolean owned;
+  // filters running on the pool right now; guarded by this engine
+  private int users;
+  // true once the pool should close as soon as it has no users
+  private boolean retired;
+  // true once the pool has closed, so later filters run on the calling thread
+  private boolean closed;
+
+  /**
+   * Creates an engine that runs tiles on the given pool, or on the calling thread only if the
+   * pool is null
+   * @param pool pool to run tiles on
+   * @param owned true if the pool is this engine's alone
+   */
+  private ConvolutionEngine(ForkJoinPool pool, boolean owned) {
+    this.pool = pool;
+    this.owned = owned;
+  }
+
+  /**
+   * Creates an engine using the given number of threads: 1 filters on the calling thread, a
+   * number above 1 gets a dedicated pool of that size, and 0 or less uses the common pool
+   * @param threads number of threads to use
+   * @return new engine
+   */
+  static ConvolutionEngine withThreads(int threads) {
+    if (threads == 1) {
+      return new ConvolutionEngine(null, false);
+    }
+    if (threads > 1) {
+      return new ConvolutionEngine(new ForkJoinPool(threads), true);
+    }
+    return new ConvolutionEngine(ForkJoinPool.commonPool(), false);
+  }
+
+  /**
+   * Gets an engine using the thread count in the imageprocessing.threads system property, or
+   * the common pool if it isn't set. A count above 1 gets a pool of that size made the first
+   * time it is asked for and shared by every caller after that, so models made per file or per
+   * request don't each start their own threads. Shutting the engine down does nothing
+   * @return engine for the configured thread count
+   */
+  static ConvolutionEngine fromSystemProperty() {
+    int threads = Integer.getInteger(THREADS_PROPERTY, 0);
+    if (threads <= 1) {
+      return withThreads(threads);
+    }
+    return SHARED.computeIfAbsent(threads,
+        size -> new ConvolutionEngine(new ForkJoinPool(size), false));
+  }
+
+  /**
+   * Releases this engine's threads if it owns a dedicated pool, once every filter already
+   * running on it finishes. Filters started on this engine after that run on the calling
+   * thread, with the same result. Engines over a shared pool are left as they are
+   */
+  synchronized void shutdown() {
+    if (!this.owned) {
+      return;
+    }
+    this.retired = true;
+    if (this.users == 0) {
+      this.close();
+    }
+  }
+
+  /**
+   * Counts a filter as using the pool, unless the pool has closed
+   * @return true if the filter can run on the pool
+   */
+  private synchronized boolean enter() {
+    if (this.closed) {
+      return false;
+    }
+    this.users += 1;
+    return true;
+  }
+
+  /**
+   * Counts a filter as done with the pool, closing it if it was the last user of a retired pool
+   */
+  private synchronized void leave() {
+    this.users -= 1;
+    if (this.users == 0 && this.retired) {
+      this.close();
+    }
+  }
+
+  /**
+   * Shuts the pool down; it has no users left
+   */
+  private void close() {
+    this.closed = true;
+    this.pool.shutdown();
+  }
+
+  /**
+   * Convolves the given image with the given square kernel, truncating and clamping each
+   * channel of the result
+   * @param image image to filter
+   * @param matrix square kernel, centered on the pixel being computed
+   * @param arithmetic number format to accumulate in
+   * @return new filtered image
+   */
+  PackedImage convolve(PackedImage image, double[][] matrix, Arithmetic arithmetic) {
+    // tiles read rows with plain strides, so views are copied first
+    PackedImage src = image.compact();
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight());
+    double[][] factors = separate(matrix);
+    TileFilter filter;
+    if (factors != null) {
+      double[] both = new double[2 * matrix.length];
+      System.arraycopy(factors[0], 0, both, 0, matrix.length);
+      System.arraycopy(factors[1], 0, both, matrix.length, matrix.length);
+      boolean fixed = arithmetic == Arithmetic.FIXED_POINT
+          || (arithmetic == Arithmetic.AUTO && FixedPoint.isExact(both));
+      if (fixed && fits(factors)) {
+        filter = new SeparableFixedFilter(src, dest, FixedPoint.toFixed(factors[0]),
+            FixedPoint.toFixed(factors[1]));
+      } else if (arithmetic == Arithmetic.FIXED_POINT
+          && FixedPoint.useFixed(arithmetic, FixedPoint.flatten(matrix))) {
+        filter = new DenseFixedFilter(src, dest, matrix);
+      } else {
+        filter = new SeparableFilter(src, dest, factors[0], factors[1]);
+      }
+    } else if (FixedPoint.useFixed(arithmetic, FixedPoint.flatten(matrix))) {
+      filter = new DenseFixedFilter(src, dest, matrix);
+    } else {
+      filter = new DenseFilter(src, dest, matrix);
+    }
+    this.run(filter);
+    return dest;
+  }
+
+  /**
+   * Checks if the two fixed point passes of a separable filter can't overflow. The vertical pass
+   * carries twice the fractional bits, so the bound is on the product of the factors
+   * @param factors column and row factors of the kernel
+   * @return true if every intermediate sum fits in a long
+   */
+  private static boolean fits(double[][] factors) {
+    double column = 0;
+    double row = 0;
+    for (int i = 0; i < factors[0].length; i += 1) {
+      column += Math.abs(factors[0][i]);
+      row += Math.abs(factors[1][i]);
+    }
+    return FixedPoint.fits(new double[] {column * row}, 2 * FixedPoint.SHIFT);
+  }
+
+  /**
+   * Runs the given filter over every tile of its output, in parallel if this engine has a pool
+   * and the image is large enough
+   * @param filter filter to run
+   */
+  private void run(TileFilter filter) {
+    int height = filter.src.getHeight();
+    int width = filter.src.getWidth();
+    int tileRows = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+    int tileCols = (width + TILE_WIDTH - 1) / TILE_WIDTH;
+    boolean parallel = this.pool != null && (long) width * height >= PARALLEL_THRESHOLD
+        && this.enter();
+    TileTask all = new TileTask(filter, tileCols, 0, tileRows * tileCols, parallel,
+        Cancellation.current());
+    if (parallel) {
+      try {
+        this.pool.invoke(all);
+      } finally {
+        this.leave();
+      }
+    } else {
+      all.compute();
+    }
+  }
+
+  /**
+   * Splits a square kernel into a column vector and a row vector whose outer product is the
+   * kernel, if it has rank 1. The row through the largest entry gives the row factor, and every
+   * entry must be reproduced to within a relative tolerance
+   * @param matrix square kernel
+   * @return {column, row}, or null if the kernel isn't separable
+   */
+  static double[][] separate(double[][] matrix) {
+    int size = matrix.length;
+    int pivotRow = 0;
+    int pivotCol = 0;
+    double max = 0;
+    for (int row = 0; row < size; row += 1) {
+      if (matrix[row].length != size) {
+        return null;
+      }
+      for (int col = 0; col < size; col += 1) {
+        if (Math.abs(matrix[row][col]) > max) {
+          max = Math.abs(matrix[row][col]);
+          pivotRow = row;
+          pivotCol = col;
+        }
+      }
+    }
+    if (size < 2 || max == 0 || Double.isNaN(max) || Double.isInfinite(max)) {
+      return null;
+    }
+    // normalize the row factor to sum to 1 where possible, which keeps both factors of a
+    // binomial blur dyadic; fall back to dividing by the pivot for zero-sum kernels
+    double pivotRowSum = 0;
+    for (int col = 0; col < size; col += 1) {
+      pivotRowSum += matrix[pivotRow][col];
+    }
+    boolean bySum = Math.abs(pivotRowSum) > SEPARABLE_TOLERANCE * max;
+    double[] column = new double[size];
+    double[] rowVector = new double[size];
+    for (int i = 0; i < size; i += 1) {
+      if (bySum) {
+        double rowSum = 0;
+        for (int col = 0; col < size; col += 1) {
+          rowSum += matrix[i][col];
+        }
+        column[i] = rowSum;
+        rowVector[i] = matrix[pivotRow][i] / pivotRowSum;
+      } else {
+        column[i] = matrix[i][pivotCol];
+        rowVector[i] = matrix[pivotRow][i] / matrix[pivotRow][pivotCol];
+      }
+    }
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 1) {
+        if (Math.abs(column[row] * rowVector[col] - matrix[row][col])
+            > SEPARABLE_TOLERANCE * max) {
+          return null;
+        }
+      }
+    }
+    return new double[][] {column, rowVector};
+  }
+
+  /**
+   * Fork/join task covering a contiguous range of tile indices, split in half until a single
+   * tile is left
+   */
+  private static final class TileTask extends RecursiveAction {
+    private final TileFilter filter;
+    private final int tileCols;
+    private final int from;
+    private final int to;
+    private final boolean parallel;
+    // checked before each tile, or null if the filter can't be given up on
+    private final BooleanSupplier wanted;
+
+    /**
+     * Creates a task for tiles numbered from (inclusive) to to (exclusive), row-major
+     * @param filter filter to run on each tile
+     * @param tileCols number of tiles across the image
+     * @param from first tile index
+     * @param to one past last tile index
+     * @param parallel true to split into subtasks, false to run every tile on this thread
+     * @param wanted check of the read the filter is for, or null
+     */
+    TileTask(TileFilter filter, int tileCols, int from, int to, boolean parallel,
+        BooleanSupplier wanted) {
+      this.filter = filter;
+      this.tileCols = tileCols;
+      this.from = from;
+      this.to = to;
+      this.parallel = parallel;
+      this.wanted = wanted;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.parallel && this.to - this.from > 1) {
+        int mid = (this.from + this.to) >>> 1;
+        invokeAll(new TileTask(filter, tileCols, from, mid, true, wanted),
+            new TileTask(filter, tileCols, mid, to, true, wanted));
+        return;
+      }
+      for (int tile = this.from; tile < this.to; tile += 1) {
+        Cancellation.check(this.wanted);
+        int top = tile / this.tileCols * TILE_HEIGHT;
+        int left = tile % this.tileCols * TILE_WIDTH;
+        this.filter.filterTile(top, Math.min(top + TILE_HEIGHT, this.filter.src.getHeight()),
+            left, Math.min(left + TILE_WIDTH, this.filter.src.getWidth()));
+      }
+    }
+  }
+
+  /**
+   * A filter that can compute any rectangle of its output independently of the others
+   */
+  private abstract static class TileFilter {
+    protected final PackedImage src;
+    protected final PackedImage dest;
+
+    /**
+     * Creates a filter from src into dest
+     * @param src image to filter
+     * @param dest image to write results to
+     */
+    TileFilter(PackedImage src, PackedImage dest) {
+      this.src = src;
+      this.dest = dest;
+    }
+
+    /**
+     * Computes the rectangle [top, bottom) x [left, right) of the output
+     * @param top first row
+     * @param bottom one past last row
+     * @param left first column
+     * @param right one past last column
+     */
+    abstract void filterTile(int top, int bottom, int left, int right);
+  }
+
+  /**
+   * Full k*k convolution, summing taps in row-major kernel order
+   */
+  private static final class DenseFilter extends TileFilter {
+    private final double[] kernel;
+    private final int size;
+
+    /**
+     * Creates a dense filter for the given kernel
+     * @param src image to filter
+     * @param dest image to write results to
+     * @param matrix square kernel
+     */
+    DenseFilter(PackedImage src, PackedImage dest, double[][] matrix) {
+      super(src, dest);
+      this.size = matrix.length;
+      this.kernel = new double[this.size * this.size];
+      for (int row = 0; row < this.size; row += 1) {
+        for (int col = 0; col < this.size; col += 1) {
+          this.kernel[row * this.size + col] = matrix[row][col];
+        }
+      }
+    }
+
+    @Override
+    void filterTile(int top, int bottom, int left, int right) {
+      int half = this.size / 2;
+      int height = this.src.getHeight();
+      int width = this.src.getWidth();
+      // interior is where the kernel never leaves the image
+      int innerTop = Math.max(top, half);
+      int innerBottom = Math.min(bottom, height - (this.size - 1 - half));
+      int innerLeft = Math.max(left, half);
+      int innerRight = Math.min(right, width - (this.size - 1 - half));
+      int[] out = this.dest.getPixels();
+      for (int row = top; row < bottom; row += 1) {
+        int destRow = row * this.dest.getStride();
+        boolean innerRow = row >= innerTop && row < innerBottom && innerLeft < innerRight;
+        if (!innerRow) {
+          for (int col = left; col < right; col += 1) {
+            out[destRow + col] = this.checked(row, col);
+          }
+          continue;
+        }
+        for (int col = left; col < innerLeft; col += 1) {
+          out[destRow + col] = this.checked(row, col);
+        }
+        for (int col = innerLeft; col < innerRight; col += 1) {
+          out[destRow + col] = this.unchecked(row, col);
+        }
+        for (int col = innerRight; col < right; col += 1) {
+          out[destRow + col] = this.checked(row, col);
+        }
+      }
+    }
+
+    /**
+     * Computes one output pixel whose kernel lies fully inside the image
+     * @param curHeight row of pixel
+     * @param curWidth column of pixel
+     * @return packed filtered color
+     */
+    private int unchecked(int curHeight, int curWidth) {
+      int half = this.size / 2;
+      int stride = this.src.getStride();
+      int[] pixels = this.src.getPixels();
+      double red = 0;
+      double green = 0;
+      double blue = 0;
+      int tap = 0;
+      int base = (curHeight - half) * stride + curWidth - half;
+      for (int row = 0; row < this.size; row += 1) {
+        for (int col = 0; col < this.size; col += 1) {
+          int rgb = pixels[base + col];
+          double weight = this.kernel[tap];
+          red += weight * PackedImage.red(rgb);
+          green += weight * PackedImage.green(rgb);
+          blue += weight * PackedImage.blue(rgb);
+          tap += 1;
+        }
+        base += stride;
+      }
+      return PackedImage.pack(PackedImage.clamp((int) red), PackedImage.clamp((int) green),
+          PackedImage.clamp((int) blue));
+    }
+
+    /**
+     * Computes one output pixel near the border, skipping taps that fall outside the image
+     * @param curHeight row of pixel
+     * @param curWidth column of pixel
+     * @return packed filtered color
+     */
+    private int checked(int curHeight, int curWidth) {
+      int half = this.size / 2;
+      int stride = this.src.getStride();
+      int[] pixels = this.src.getPixels();
+      double red = 0;
+      double green = 0;
+      double blue = 0;
+      for (int row = 0; row < this.size; row += 1) {
+        for (int col = 0; col < this.size; col += 1) {
+          int curRow = curHeight - half + row;
+          int curCol = curWidth - half + col;
+          if (curRow >= 0 && curRow < this.src.getHeight() && curCol >= 0
+              && curCol < this.src.getWidth()) {
+            int rgb = pixels[curRow * stride + curCol];
+            double weight = this.kernel[row * this.size + col];
+            red += weight * PackedImage.red(rgb);
+            green += weight * PackedImage.green(rgb);
+            blue += weight * PackedImage.blue(rgb);
+          }
+        }
+      }
+      return PackedImage.pack(PackedImage.clamp((int) red), PackedImage.clamp((int) green),
+          PackedImage.clamp((int) blue));
+    }
+  }
+
+  /**
+   * Separable convolution: each tile first filters the rows it needs with the row vector into a
+   * per-thread scratch buffer, then filters that buffer's columns with the column vector
+   */
+  private static final class SeparableFilter extends TileFilter {
+    // scratch rows of horizontally filtered red, green, and blue, reused by each thread
+    private static final ThreadLocal<double[]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[0]);
+
+    private final double[] column;
+    private final double[] row;
+
+    /**
+     * Creates a separable filter whose kernel is the outer product of column and row
+     * @param src image to filter
+     * @param dest image to write results to
+     * @param column vertical factor of the kernel
+     * @param row horizontal factor of the kernel
+     */
+    SeparableFilter(PackedImage src, PackedImage dest, double[] column, double[] row) {
+      super(src, dest);
+      this.column = column;
+      this.row = row;
+    }
+
+    @Override
+    void filterTile(int top, int bottom, int left, int right) {
+      int size = this.row.length;
+      int half = size / 2;
+      int height = this.src.getHeight();
+      int width = this.src.getWidth();
+      int stride = this.src.getStride();
+      int[] pixels = this.src.getPixels();
+      // rows of the source the vertical pass reads for this tile
+      int firstRow = Math.max(0, top - half);
+      int lastRow = Math.min(height, bottom + size - 1 - half);
+      int tileWidth = right - left;
+      int planeSize = (lastRow - firstRow) * tileWidth;
+      double[] scratch = SCRATCH.get();
+      if (scratch.length < 3 * planeSize) {
+        scratch = new double[3 * planeSize];
+        SCRATCH.set(scratch);
+      }
+      int innerLeft = Math.max(left, half);
+      int innerRight = Math.min(right, width - (size - 1 - half));
+      for (int y = firstRow; y < lastRow; y += 1) {
+        int srcRow = y * stride;
+        int out = (y - firstRow) * tileWidth - left;
+        for (int x = left; x < right; x += 1) {
+          double red = 0;
+          double green = 0;
+          double blue = 0;
+          if (x >= innerLeft && x < innerRight) {
+            int base = srcRow + x - half;
+            for (int tap = 0; tap < size; tap += 1) {
+              int rgb = pixels[base + tap];
+              double weight = this.row[tap];
+              red += weight * PackedImage.red(rgb);
+              green += weight * PackedImage.green(rgb);
+              blue += weight * PackedImage.blue(rgb);
+            }
+          } else {
+            for (int tap = 0; tap < size; tap += 1) {
+              int curCol = x - half + tap;
+              if (curCol >= 0 && curCol < width) {
+                int rgb = pixels[srcRow + curCol];
+                double weight = this.row[tap];
+                red += weight * PackedImage.red(rgb);
+                green += weight * PackedImage.green(rgb);
+                blue += weight * PackedImage.blue(rgb);
+              }
+            }
+          }
+          scratch[out + x] = red;
+          scratch[planeSize + out + x] = green;
+          scratch[2 * planeSize + out + x] = blue;
+        }
+      }
+      int[] result = this.dest.getPixels();
+      for (int y = top; y < bottom; y += 1) {
+        int destRow = y * this.dest.getStride();
+        for (int x = left; x < right; x += 1) {
+          double red = 0;
+          double green = 0;
+          double blue = 0;
+          for (int tap = 0; tap < size; tap += 1) {
+            int curRow = y - half + tap;
+            if (curRow >= 0 && curRow < height) {
+              int i = (curRow - firstRow) * tileWidth + x - left;
+              double weight = this.column[tap];
+              red += weight * scratch[i];
+              green += weight * scratch[planeSize + i];
+              blue += weight * scratch[2 * planeSize + i];
+            }
+          }
+          result[destRow + x] = PackedImage.pack(PackedImage.clamp((int) red),
+              PackedImage.clamp((int) green), PackedImage.clamp((int) blue));
+        }
+      }
+    }
+  }
+
+  /**
+   * Full k*k convolution with 16.16 fixed point weights, summing taps as longs
+   */
+  private static final class DenseFixedFilter extends TileFilter {
+    private final long[] kernel;
+    private final int size;
+
+    /**
+     * Creates a dense fixed point filter for the given kernel
+     * @param src image to filter
+     * @param dest image to write results to
+     * @param matrix square kernel
+     */
+    DenseFixedFilter(PackedImage src, PackedImage dest, double[][] matrix) {
+      super(src, dest);
+      this.size = matrix.length;
+      this.kernel = FixedPoint.toFixed(FixedPoint.flatten(matrix));
+    }
+
+    @Override
+    void filterTile(int top, int bottom, int left, int right) {
+      int half = this.size / 2;
+      int height = this.src.getHeight();
+      int width = this.src.getWidth();
+      int stride = this.src.getStride();
+      int[] pixels = this.src.getPixels();
+      int[] out = this.dest.getPixels();
+      for (int y = top; y < bottom; y += 1) {
+        int destRow = y * this.dest.getStride();
+        boolean innerRow = y >= half && y < height - (this.size - 1 - half);
+        for (int x = left; x < right; x += 1) {
+          long red = 0;
+          long green = 0;
+          long blue = 0;
+          if (innerRow && x >= half && x < width - (this.size - 1 - half)) {
+            int base = (y - half) * stride + x - half;
+            int tap = 0;
+            for (int row = 0; row < this.size; row += 1) {
+              for (int col = 0; col < this.size; col += 1) {
+                int rgb = pixels[base + col];
+                long weight = this.kernel[tap];
+                red += weight * PackedImage.red(rgb);
+                green += weight * PackedImage.green(rgb);
+                blue += weight * PackedImage.blue(rgb);
+                tap += 1;
+              }
+              base += stride;
+            }
+          } else {
+            for (int row = 0; row < this.size; row += 1) {
+              int curRow = y - half + row;
+              if (curRow < 0 || curRow >= height) {
+                continue;
+              }
+              for (int col = 0; col < this.size; col += 1) {
+                int curCol = x - half + col;
+                if (curCol >= 0 && curCol < width) {
+                  int rgb = pixels[curRow * stride + curCol];
+                  long weight = this.kernel[row * this.size + col];
+                  red += weight * PackedImage.red(rgb);
+                  green += weight * PackedImage.green(rgb);
+                  blue += weight * PackedImage.blue(rgb);
+                }
+              }
+            }
+          }
+          out[destRow + x] = PackedImage.pack(FixedPoint.toChannel(red, FixedPoint.SHIFT),
+              FixedPoint.toChannel(green, FixedPoint.SHIFT),
+              FixedPoint.toChannel(blue, FixedPoint.SHIFT));
+        }
+      }
+    }
+  }
+
+  /**
+   * Separable convolution with 16.16 fixed point factors. The horizontal pass keeps 16
+   * fractional bits and the vertical pass 32, and only the final result is truncated
+   */
+  private static final class SeparableFixedFilter extends TileFilter {
+    // scratch rows of horizontally filtered red, green, and blue, reused by each thread
+    private static final ThreadLocal<long[]> SCRATCH =
+        ThreadLocal.withInitial(() -> new long[0]);
+
+    private final long[] column;
+    private final long[] row;
+
+    /**
+     * Creates a separable fixed point filter whose kernel is the outer product of column and row
+     * @param src image to filter
+     * @param dest image to write results to
+     * @param column fixed point vertical factor of the kernel
+     * @param row fixed point horizontal factor of the kernel
+     */
+    SeparableFixedFilter(PackedImage src, PackedImage dest, long[] column, long[] row) {
+      super(src, dest);
+      this.column = column;
+      this.row = row;
+    }
+
+    @Override
+    void filterTile(int top, int bottom, int left, int right) {
+      int size = this.row.length;
+      int half = size / 2;
+      int height = this.src.getHeight();
+      int width = this.src.getWidth();
+      int stride = this.src.getStride();
+      int[] pixels = this.src.getPixels();
+      int firstRow = Math.max(0, top - half);
+      int lastRow = Math.min(height, bottom + size - 1 - half);
+      int tileWidth = right - left;
+      int planeSize = (lastRow - firstRow) * tileWidth;
+      long[] scratch = SCRATCH.get();
+      if (scratch.length < 3 * planeSize) {
+        scratch = new long[3 * planeSize];
+        SCRATCH.set(scratch);
+      }
+      int innerLeft = Math.max(left, half);
+      int innerRight = Math.min(right, width - (size - 1 - half));
+      for (int y = firstRow; y < lastRow; y += 1) {
+        int srcRow = y * stride;
+        int out = (y - firstRow) * tileWidth - left;
+        for (int x = left; x < right; x += 1) {
+          long red = 0;
+          long green = 0;
+          long blue = 0;
+          if (x >= innerLeft && x < innerRight) {
+            int base = srcRow + x - half;
+            for (int tap = 0; tap < size; tap += 1) {
+              int rgb = pixels[base + tap];
+              long weight = this.row[tap];
+              red += weight * PackedImage.red(rgb);
+              green += weight * PackedImage.green(rgb);
+              blue += weight * PackedImage.blue(rgb);
+            }
+          } else {
+            for (int tap = 0; tap < size; tap += 1) {
+              int curCol = x - half + tap;
+              if (curCol >= 0 && curCol < width) {
+                int rgb = pixels[srcRow + curCol];
+                long weight = this.row[tap];
+                red += weight * PackedImage.red(rgb);
+                green += weight * PackedImage.green(rgb);
+                blue += weight * PackedImage.blue(rgb);
+              }
+            }
+          }
+          scratch[out + x] = red;
+          scratch[planeSize + out + x] = green;
+          scratch[2 * planeSize + out + x] = blue;
+        }
+      }
+      int[] result = this.dest.getPixels();
+      for (int y = top; y < bottom; y += 1) {
+        int destRow = y * this.dest.getStride();
+        for (int x = left; x < right; x += 1) {
+          long red = 0;
+          long green = 0;
+          long blue = 0;
+          for (int tap = 0; tap < size; tap += 1) {
+            int curRow = y - half + tap;
+            if (curRow >= 0 && curRow < height) {
+              int i = (curRow - firstRow) * tileWidth + x - left;
+              long weight = this.column[tap];
+              red += weight * scratch[i];
+              green += weight * scratch[planeSize + i];
+              blue += weight * scratch[2 * planeSize + i];
+            }
+          }
+          result[destRow + x] = PackedImage.pack(
+              FixedPoint.toChannel(red, 2 * FixedPoint.SHIFT),
+              FixedPoint.toChannel(green, 2 * FixedPoint.SHIFT),
+              FixedPoint.toChannel(blue, 2 * FixedPoint.SHIFT));
+        }
+      }
+    }
+  }
+}
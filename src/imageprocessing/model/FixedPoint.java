@@ -0,0 +1,123 @@
+package imageprocessing.model;
+
+/**
+ * Helpers for 16.16 fixed point weights: a weight w is stored as the integer round(w * 65536)
+ */
+final class FixedPoint {
+  // number of fractional bits
+  static final int SHIFT = 16;
+  // fixed point representation of 1
+  static final long ONE = 1L << SHIFT;
+  // weights at least this large in magnitude aren't converted
+  private static final double LIMIT = (double) (1L << 31);
+
+  private FixedPoint() {
+  }
+
+  /**
+   * Checks if the given weight is exactly a multiple of 1/65536 in a range fixed point handles
+   * @param weight weight to check
+   * @return true if converting it to fixed point loses nothing
+   */
+  static boolean isExact(double weight) {
+    double scaled = weight * ONE;
+    return Math.abs(weight) < LIMIT && scaled == Math.rint(scaled);
+  }
+
+  /**
+   * Checks if all the given weights are exact in fixed point
+   * @param weights weights to check
+   * @return true if every weight is exact
+   */
+  static boolean isExact(double[] weights) {
+    for (double weight : weights) {
+      if (!isExact(weight)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Converts the given weights to fixed point, rounding to the nearest 1/65536
+   * @param weights weights to convert
+   * @return fixed point weights
+   * @throws IllegalArgumentException if a weight is too large for fixed point
+   */
+  static long[] toFixed(double[] weights) {
+    long[] fixed = new long[weights.length];
+    for (int i = 0; i < weights.length; i += 1) {
+      if (!(Math.abs(weights[i]) < LIMIT)) {
+        throw new IllegalArgumentException("weight too large for fixed point arithmetic");
+      }
+      fixed[i] = Math.round(weights[i] * ONE);
+    }
+    return fixed;
+  }
+
+  /**
+   * Checks if sums of channel values weighted by the given weights, scaled up by 2^shift, always
+   * fit in a long
+   * @param weights weights that will be used
+   * @param shift number of fractional bits the sums will carry
+   * @return true if no sum can overflow
+   */
+  static boolean fits(double[] weights, int shift) {
+    double total = 0;
+    for (double weight : weights) {
+      total += Math.abs(weight);
+    }
+    return total * 255 * Math.pow(2, shift) < Math.pow(2, 62);
+  }
+
+  /**
+   * Decides whether to use fixed point for the given weights
+   * @param arithmetic requested arithmetic
+   * @param weights weights that will be used
+   * @return true to use fixed point, false for floating point
+   * @throws IllegalArgumentException if fixed point is requested but the weights are too large
+   */
+  static boolean useFixed(Arithmetic arithmetic, double[] weights) {
+    switch (arithmetic) {
+      case FIXED_POINT:
+        if (!fits(weights, SHIFT)) {
+          throw new IllegalArgumentException("weights too large for fixed point arithmetic");
+        }
+        return true;
+      case FLOATING_POINT:
+        return false;
+      default:
+        return isExact(weights) && fits(weights, SHIFT);
+    }
+  }
+
+  /**
+   * Truncates a fixed point sum toward zero, like a cast from double, and clamps it to 0-255
+   * @param sum fixed point sum with the given number of fractional bits
+   * @param shift number of fractional bits in sum
+   * @return channel value
+   */
+  static int toChannel(long sum, int shift) {
+    long value = sum / (1L << shift);
+    return (int) Math.max(Math.min(value, 255), 0);
+  }
+
+  /**
+   * Flattens a matrix into a row-major array
+   * @param matrix matrix to flatten
+   * @return entries of matrix, row by row
+   */
+  static double[] flatten(double[][] matrix) {
+    int length = 0;
+    for (double[] row : matrix) {
+      length += row.length;
+    }
+    double[] flat = new double[length];
+    int i = 0;
+    for (double[] row : matrix) {
+      System.arraycopy(row, 0, flat, i, row.length);
+      i += row.length;
+    }
+    return flat;
+  }
+}
@@ -7,12 +7,30 @@ import java.io.IOException;
  */
 public interface ImageProcessingModel extends ImageProcessingModelState{
   /**
-   * Load the image with the given path and set it as the given name ID in the model
+   * Load the PPM (P3/P6) or PGM (P2/P5) image with the given path and set it as the given
+   * name ID in the model
    * @param filename path of file to load
    * @param nameID nameID to associate with loaded image
    */
   void loadImage(String filename, String nameID);
 
+  /**
+   * Load the image with the given path and set it as the given name ID in the model, reading it
+   * as a PPM/PGM file if it starts with a Netpbm magic number and with ImageIO otherwise
+   * @param filename path of file to load
+   * @param nameID nameID to associate with loaded image
+   * @throws IOException if the file can't be read
+   */
+  void openImage(String filename, String nameID) throws IOException;
+
+  /**
+   * Checks whether openImage could load the file with the given path, reading only its header
+   * and size rather than its pixel data, so a file whose pixel data is damaged still passes
+   * @param filename path of file to check
+   * @return true if the file exists and its header is one openImage reads
+   */
+  boolean canOpen(String filename);
+
   /**
    * Computes greyscale of image with given name ID using red, green, or blue
    * component based on given rgb value and saves edited image to image with given destName
@@ -39,6 +57,16 @@ public interface ImageProcessingModel extends ImageProcessingModelState{
    */
   void colorTransform(double[][] matrix, String nameID, String destName);
 
+  /**
+   * Transforms colors of pixels in image with given name ID using given matrix, accumulating
+   * in the given arithmetic, and saves edited image to image with given destName
+   * @param matrix color transformation matrix to use
+   * @param nameID name ID of image
+   * @param destName name ID to set edited image to
+   * @param arithmetic number format to compute weighted sums in
+   */
+  void colorTransform(double[][] matrix, String nameID, String destName, Arithmetic arithmetic);
+
   /**
    * Filters image with given name ID using given matrix
    * and saves edited image to image with given destName
@@ -48,6 +76,16 @@ public interface ImageProcessingModel extends ImageProcessingModelState{
    */
   void filter(double[][] matrix, String nameID, String destName);
 
+  /**
+   * Filters image with given name ID using given matrix, accumulating in the given arithmetic,
+   * and saves edited image to image with given destName
+   * @param matrix kernel of filter operation
+   * @param nameID name ID of image
+   * @param destName name ID to set edited image to
+   * @param arithmetic number format to compute weighted sums in
+   */
+  void filter(double[][] matrix, String nameID, String destName, Arithmetic arithmetic);
+
   /**
    * Flips image with given name ID horizontally if boolean is true and
    * vertical if false and saves edited image to image with given destName
@@ -67,6 +105,26 @@ public interface ImageProcessingModel extends ImageProcessingModelState{
    */
   void brighten(int increment, String nameID, String destName);
 
+  /**
+   * Maps every channel of every pixel of image with given name ID through the given lookup table
+   * and saves edited image to image with given destName
+   * @param lut per-channel lookup table to apply
+   * @param nameID name ID of image
+   * @param destName name ID to set edited image to
+   */
+  void applyLut(ChannelLut lut, String nameID, String destName);
+
+  /**
+   * Shrinks image with given name ID to the given size, averaging the block of pixels that lands
+   * on each new pixel, and saves the smaller image to image with given destName
+   * @param width new width, at most the image's width
+   * @param height new height, at most the image's height
+   * @param nameID name ID of image
+   * @param destName name ID to set edited image to
+   * @throws IllegalArgumentException if the size isn't positive or is larger than the image
+   */
+  void downscale(int width, int height, String nameID, String destName);
+
   /**
    * Saves image with given name ID to given file path
    * @param filename path to save to
@@ -74,6 +132,14 @@ public interface ImageProcessingModel extends ImageProcessingModelState{
    */
   void saveImage(String filename, String nameID) throws IOException;
 
+  /**
+   * Saves image with given name ID to given file path as a binary Netpbm file: P5 (PGM) if the
+   * path ends in .pgm and P6 (PPM) otherwise
+   * @param filename path to save to
+   * @param nameID name ID of image to save
+   */
+  void saveBinaryImage(String filename, String nameID) throws IOException;
+
   /**
    * Turns image with non ppm file type (at given path) to array of colors and
    * saves the image with given nameID
@@ -89,4 +155,10 @@ public interface ImageProcessingModel extends ImageProcessingModelState{
    * @param destName name ID to set edited image to
    */
   void value(String nameID, String destName);
+
+  /**
+   * Removes every image from the model, releasing the memory and disk space they take up in
+   * its image store. The model can still be used afterwards, starting empty
+   */
+  void clear();
 }
\ No newline at end of file
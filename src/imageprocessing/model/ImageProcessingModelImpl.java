@@ -3,31 +3,73 @@ package imageprocessing.model;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Scanner;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.NoSuchFileException;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 
 /**
- * Implementation for an Image Processing editor model
+ * Implementation for an Image Processing editor model. Operations only record how to produce
+ * their result; pixels are computed the first time they are read, saved, or needed by another
+ * image that is, and then kept.
+ *
+ * The model can be shared between threads without a model-wide lock. Each name ID maps to a
+ * snapshot holding its recipe and the exports made from it, which never changes once the name
+ * is given it: writing a name publishes a whole new snapshot in one step, so a reader sees
+ * either the old image or the new one and never a mix. A reader holds a reference to the recipe
+ * it got until it is done, so the image stays available even if its name is rewritten
+ * meanwhile, and reads and writes of different names, or of the same one, run in parallel
  */
 public class ImageProcessingModelImpl implements ImageProcessingModel {
+  // THIRDS[sum] is sum / 3 for every possible sum of three channels
+  private static final int[] THIRDS = new int[3 * 255 + 1];
 
-  // All working images in the model with a name ID associated
-  private Map<String, Color[][]> images;
+  static {
+    for (int sum = 0; sum < THIRDS.length; sum += 1) {
+      THIRDS[sum] = sum / 3;
+    }
+  }
+
+  // All working images in the model with a name ID associated, as snapshots of recipes that
+  // are only run the first time their pixels are needed
+  private final Map<String, Snapshot> images;
+  // Holds the pixels of every computed image, within a memory budget
+  private final ImageStore store;
+  // Guards the references and state of every recipe in this model
+  private final Object recipeLock;
+  // Runs filter kernels, possibly across several threads
+  private volatile ConvolutionEngine convolution;
+  // true to compute each image's statistics along with its pixels
+  private volatile boolean statisticsByProduct;
 
   /**
-   * Default constructor, sets the images map to a new Hashmap
+   * Default constructor, sets the images map to a new concurrent map and keeps pixels in the
+   * store shared by every model made this way, so models running side by side split one memory
+   * budget, set by the imageprocessing.budget system property
    */
   public ImageProcessingModelImpl() {
-    this.images = new HashMap<>();
+    this(SpillingImageStore.shared());
+  }
+
+  /**
+   * Constructor that keeps the pixels of every image in the given store
+   * @param store store to hold image pixels
+   */
+  public ImageProcessingModelImpl(ImageStore store) {
+    this.images = new ConcurrentHashMap<>();
+    this.store = Objects.requireNonNull(store);
+    this.recipeLock = new Object();
+    this.convolution = ConvolutionEngine.fromSystemProperty();
   }
 
   /**
@@ -37,218 +79,199 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
    * @param nameID ID image will go by in model
    */
   public ImageProcessingModelImpl(String filename, String nameID) throws IOException {
-    this.images = new HashMap<>();
-    if (filename.substring(filename.length() - 4).equals(".ppm")) {
-      this.loadImage(filename, nameID);
-    } else {
-      this.imageToArray(filename, nameID);
-    }
+    this();
+    this.openImage(filename, nameID);
   }
 
   @Override
   public void loadImage(String filename, String nameID) {
-    Scanner sc;
+    PackedImage image;
     try {
-      sc = new Scanner(new FileInputStream(filename));
-    } catch (FileNotFoundException e) {
+      image = PpmReader.read(filename);
+    } catch (NoSuchFileException e) {
       System.out.println("File " + filename + " not found!");
       throw new IllegalArgumentException("File " + filename + " not found!");
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read file " + filename);
     }
+    this.store(nameID, image);
+  }
 
-    StringBuilder builder = new StringBuilder();
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0)!='#') {
-        builder.append(s+System.lineSeparator());
-      }
+  @Override
+  public void openImage(String filename, String nameID) throws IOException {
+    boolean netpbm;
+    try {
+      netpbm = PpmReader.isNetpbm(filename);
+    } catch (IOException e) {
+      System.out.println("File " + filename + " not found!");
+      throw new IllegalArgumentException("File " + filename + " not found!");
     }
-
-    sc = new Scanner(builder.toString());
-    String token;
-    token = sc.next();
-    if (!token.equals("P3")) {
-      System.out.println("Invalid PPM file: plain RAW file should begin with P3");
+    if (netpbm) {
+      this.loadImage(filename, nameID);
+    } else {
+      this.imageToArray(filename, nameID);
     }
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    int biggest = sc.nextInt();
-    this.images.put(nameID, new Color[height][width]);
-    Color[][] p = this.images.get(nameID);
-    for (int h = 0; h < height; h += 1) {
-      for (int w = 0; w < width; w += 1) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-        p[h][w] = new Color(r, g, b);
+  }
+
+  @Override
+  public boolean canOpen(String filename) {
+    try {
+      if (PpmReader.isNetpbm(filename)) {
+        PpmReader.check(filename);
+        return true;
+      }
+      try (ImageInputStream in = ImageIO.createImageInputStream(new File(filename))) {
+        Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+        if (readers == null || !readers.hasNext()) {
+          return false;
+        }
+        ImageReader reader = readers.next();
+        try {
+          reader.setInput(in);
+          return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+        } finally {
+          reader.dispose();
+        }
       }
+    } catch (IOException | IllegalArgumentException e) {
+      return false;
     }
   }
 
   @Override
   public void rgb(String rgb, String nameID, String destName) {
+    int channel;
     switch (rgb) {
       case "red":
-        this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-        for (int height = 0; height < this.getHeight(nameID); height+=1) {
-          for (int width = 0; width < this.getWidth(nameID); width+=1) {
-            int red = this.images.get(nameID)[height][width].getRed();
-            this.images.get(destName)[height][width] = new Color(red,red,red);
-          }
-        }
+        channel = 0;
         break;
       case "green":
-        this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-        for (int height = 0; height < this.getHeight(nameID); height+=1) {
-          for (int width = 0; width < this.getWidth(nameID); width+=1) {
-            int green = this.images.get(nameID)[height][width].getGreen();
-            this.images.get(destName)[height][width] = new Color(green,green,green);
-          }
-        }
+        channel = 1;
         break;
       case "blue":
-        this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-        for (int height = 0; height < this.getHeight(nameID); height+=1) {
-          for (int width = 0; width < this.getWidth(nameID); width+=1) {
-            int blue = this.images.get(nameID)[height][width].getBlue();
-            this.images.get(destName)[height][width] = new Color(blue,blue,blue);
-          }
-        }
+        channel = 2;
         break;
       default:
         throw new IllegalArgumentException("given color is not red, green, or blue");
     }
+    this.extend(nameID, destName, chain -> chain.component(channel));
   }
 
   @Override
   public void value(String nameID, String destName) {
-    this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-    for (int height = 0; height < this.getHeight(nameID); height+=1) {
-      for (int width = 0; width < this.getWidth(nameID); width+=1) {
-        int red = this.images.get(nameID)[height][width].getRed();
-        int green = this.images.get(nameID)[height][width].getGreen();
-        int blue = this.images.get(nameID)[height][width].getBlue();
-        int max = Math.max(red, Math.max(green, blue));
-        this.images.get(destName)[height][width] = new Color(max,max,max);
-      }
-    }
+    this.extend(nameID, destName, chain -> chain.then(rgb -> {
+      int max = Math.max(PackedImage.red(rgb),
+          Math.max(PackedImage.green(rgb), PackedImage.blue(rgb)));
+      return PackedImage.pack(max, max, max);
+    }));
   }
 
   @Override
   public void intensity(String nameID, String destName) {
-    this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-    for (int height = 0; height < this.getHeight(nameID); height+=1) {
-      for (int width = 0; width < this.getWidth(nameID); width+=1) {
-        int red = this.images.get(nameID)[height][width].getRed();
-        int green = this.images.get(nameID)[height][width].getGreen();
-        int blue = this.images.get(nameID)[height][width].getBlue();
-        int average = (red + green + blue)/3;
-        this.images.get(destName)[height][width] = new Color(average,average,average);
-      }
-    }
+    this.extend(nameID, destName, chain -> chain.then(rgb -> {
+      int average = THIRDS[PackedImage.red(rgb) + PackedImage.green(rgb)
+          + PackedImage.blue(rgb)];
+      return PackedImage.pack(average, average, average);
+    }));
   }
 
   @Override
   public void colorTransform(double[][] matrix, String nameID, String destName) {
-    this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-    for (int height = 0; height < this.getHeight(nameID); height+=1) {
-      for (int width = 0; width < this.getWidth(nameID); width+=1) {
-        int rOG = this.images.get(nameID)[height][width].getRed();
-        int gOG = this.images.get(nameID)[height][width].getGreen();
-        int bOG = this.images.get(nameID)[height][width].getBlue();
-        int red = (int) (rOG * matrix[0][0] + gOG * matrix[0][1] + bOG * matrix[0][2]);
-        int green = (int) (rOG * matrix[1][0] + gOG * matrix[1][1] + bOG * matrix[1][2]);
-        int blue = (int) (rOG * matrix[2][0] + gOG * matrix[2][1] + bOG * matrix[2][2]);
-        this.images.get(destName)[height][width] = new Color(Math.max(Math.min(red, 255),0),Math.max(Math.min(green, 255),0),Math.max(Math.min(blue, 255),0));
-      }
-    }
+    this.colorTransform(matrix, nameID, destName, Arithmetic.AUTO);
+  }
+
+  @Override
+  public void colorTransform(double[][] matrix, String nameID, String destName,
+      Arithmetic arithmetic) {
+    this.extend(nameID, destName, chain -> chain.then(ColorMatrix.compile(matrix, arithmetic)));
   }
 
   @Override
   public void flip(boolean horizontal, String nameID, String destName) {
-    this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-    if (horizontal) {
-      for (int height = 0; height < this.getHeight(nameID); height+=1) {
-        for (int width = 0; width < this.getWidth(nameID); width+=1) {
-          Color left = this.images.get(nameID)[height][width];
-          Color right = this.images.get(nameID)[height][this.getWidth(nameID)-width-1];
-          this.images.get(destName)[height][width] = right;
-          this.images.get(destName)[height][this.getWidth(nameID)-width-1] = left;
-        }
-      }
-    } else {
-      for (int width = 0; width < this.getWidth(nameID); width+=1) {
-        for (int height = 0; height < this.getHeight(nameID); height+=1) {
-          Color top = this.images.get(nameID)[height][width];
-          Color bottom = this.images.get(nameID)[this.getHeight(nameID) - height - 1][width];
-          this.images.get(destName)[height][width] = bottom;
-          this.images.get(destName)[this.getHeight(nameID) - height - 1][width] = top;
-        }
-      }
-    }
+    // a flip is a view sharing the source's pixels, so it costs nothing until something needs
+    // plain row-major pixels and copies it
+    this.derive(nameID, destName,
+        src -> Recipe.derive(src, image -> horizontal ? image.flipHorizontal()
+            : image.flipVertical()));
   }
 
   @Override
   public void brighten(int increment, String nameID, String destName) {
-    this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-    for (int height = 0; height < this.getHeight(nameID); height+=1) {
-      for (int width = 0; width < this.getWidth(nameID); width+=1) {
-        int red = this.images.get(nameID)[height][width].getRed();
-        int green = this.images.get(nameID)[height][width].getGreen();
-        int blue = this.images.get(nameID)[height][width].getBlue();
-        if (increment < 0) {
-          this.images.get(destName)[height][width] = new Color(Math.max(red + increment, 0),Math.max(green + increment, 0),Math.max(blue + increment, 0));
-        } else {
-          this.images.get(destName)[height][width] = new Color(Math.min(red + increment, 255),Math.min(green + increment, 255),Math.min(blue + increment, 255));
-        }
+    this.applyLut(ChannelLut.brighten(increment), nameID, destName);
+  }
+
+  @Override
+  public void applyLut(ChannelLut lut, String nameID, String destName) {
+    this.extend(nameID, destName, chain -> chain.then(lut));
+  }
+
+  @Override
+  public void downscale(int width, int height, String nameID, String destName) {
+    this.derive(nameID, destName, src -> {
+      // check the size now rather than when the image is used
+      if (width <= 0 || height <= 0 || width > src.getWidth() || height > src.getHeight()) {
+        throw new IllegalArgumentException(
+            "downscaled size must be positive and within the image");
       }
-    }
+      return Recipe.derive(src, width, height, image -> image.downscale(width, height));
+    });
   }
 
   @Override
   public void filter(double[][] matrix, String nameID, String destName) {
-    this.images.put(destName, new Color[this.getHeight(nameID)][this.getWidth(nameID)]);
-    Color[][] image = this.images.get(nameID);
-    for (int height = 0; height < this.getHeight(nameID); height+=1) {
-      for (int width = 0; width < this.getWidth(nameID); width+=1) {
-        this.images.get(destName)[height][width] = this.kernelComp(image, height, width, matrix);
+    this.filter(matrix, nameID, destName, Arithmetic.AUTO);
+  }
+
+  @Override
+  public void filter(double[][] matrix, String nameID, String destName,
+      Arithmetic arithmetic) {
+    this.derive(nameID, destName, src -> {
+      double[][] kernel = new double[matrix.length][];
+      for (int row = 0; row < matrix.length; row += 1) {
+        kernel[row] = matrix[row].clone();
       }
-    }
+      // reject weights too large for forced fixed point now rather than when the image is used
+      FixedPoint.useFixed(arithmetic, FixedPoint.flatten(kernel));
+      return Recipe.derive(src, image -> this.convolution.convolve(image, kernel, arithmetic));
+    });
+  }
+
+  /**
+   * Sets the number of threads filter runs on: 1 runs on the calling thread, a number above 1
+   * uses a dedicated pool of that many threads, and 0 or less uses the common fork/join pool.
+   * Results are the same for every thread count. Defaults to the imageprocessing.threads
+   * system property. Filters already running finish on the threads they started with
+   * @param threads number of threads to filter with
+   */
+  public synchronized void setThreads(int threads) {
+    ConvolutionEngine old = this.convolution;
+    this.convolution = ConvolutionEngine.withThreads(threads);
+    old.shutdown();
+  }
+
+  /**
+   * Gets the store holding the pixels of this model's images, for its hit, miss, and spill
+   * counts
+   * @return image store
+   */
+  public ImageStore getStore() {
+    return this.store;
   }
 
   @Override
   public void saveImage(String filename, String nameID) throws IOException {
-    Color[][] p = this.images.get(nameID);
-    int height = this.getHeight(nameID);
-    int width = this.getWidth(nameID);
+    PackedImage p = this.image(nameID);
     String type = filename.substring(filename.indexOf('.'));
-    if (type.equals(".ppm")) {
-      FileWriter writer;
+    if (type.equals(".pgm")) {
+      this.saveBinaryImage(filename, nameID);
+    } else if (type.equals(".ppm")) {
       try {
-        writer = new FileWriter(filename);
-      } catch (IOException e) {
+        PpmWriter.writePlain(p, filename);
+      } catch (NoSuchFileException e) {
         throw new IllegalArgumentException("file path doesn't exist");
       }
-      StringBuilder builder = new StringBuilder();
-      builder.append("P3\n");
-      builder.append(width + " " + height +"\n");
-      builder.append("255\n");
-      for (int h = 0; h < height; h += 1) {
-        for (int w = 0; w < width; w += 1) {
-          int red = p[h][w].getRed();
-          int green = p[h][w].getGreen();
-          int blue = p[h][w].getBlue();
-          builder.append(red + " " + green + " " + blue + " \n");
-        }
-      }
-      writer.write(builder.toString());
-      writer.close();
     } else {
-      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-      for (int h = 0; h < height; h += 1) {
-        for (int w = 0; w < width; w += 1) {
-          image.setRGB(w,h,p[h][w].getRGB());
-        }
-      }
+      BufferedImage image = BufferedImages.toBufferedImage(p);
       try {
         ImageIO.write(image, type.substring(1), new File(filename));
       } catch (IOException e) {
@@ -257,19 +280,39 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
     }
   }
 
+  @Override
+  public void saveBinaryImage(String filename, String nameID) throws IOException {
+    PackedImage p = this.image(nameID);
+    try {
+      PpmWriter.writeBinary(p, filename, filename.endsWith(".pgm"));
+    } catch (NoSuchFileException e) {
+      throw new IllegalArgumentException("file path doesn't exist");
+    }
+  }
+
   @Override
   public int getHeight(String nameID) {
-    return this.images.get(nameID).length;
+    return this.images.get(nameID).recipe.getHeight();
   }
 
   @Override
   public int getWidth(String nameID) {
-    return this.images.get(nameID)[0].length;
+    return this.images.get(nameID).recipe.getWidth();
   }
 
   @Override
   public Color pixelRGB(int row, int col, String nameID) {
-    return this.images.get(nameID)[row][col];
+    return new Color(this.getPixel(row, col, nameID));
+  }
+
+  @Override
+  public int getPixel(int row, int col, String nameID) {
+    return this.image(nameID).getRGB(row, col);
+  }
+
+  @Override
+  public PackedImage getPackedImage(String nameID) {
+    return this.image(nameID).readOnly();
   }
 
   @Override
@@ -284,16 +327,67 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
 
   @Override
   public Image getImage(String nameID) {
-    BufferedImage image = new BufferedImage(this.getWidth(nameID),
-        this.getHeight(nameID), BufferedImage.TYPE_INT_RGB);
-    for(int x = 0; x < this.getHeight(nameID) - 1; x += 1) {
-      for(int y = 0; y < this.getWidth(nameID) - 1; y += 1) {
-        image.setRGB(y, x, this.pixelRGB(x, y, nameID).getRGB());
+    Snapshot snapshot = this.pin(nameID);
+    try {
+      return this.export(snapshot);
+    } finally {
+      snapshot.recipe.drop();
+    }
+  }
+
+  @Override
+  public ImagePyramid getPyramid(String nameID) {
+    Snapshot snapshot = this.pin(nameID);
+    try {
+      SoftReference<ImagePyramid> cached = snapshot.pyramid;
+      ImagePyramid pyramid = cached == null ? null : cached.get();
+      if (pyramid == null) {
+        pyramid = ImagePyramid.of(snapshot.recipe.render(), this.export(snapshot));
+        snapshot.pyramid = new SoftReference<>(pyramid);
       }
+      return pyramid;
+    } finally {
+      snapshot.recipe.drop();
+    }
+  }
+
+  @Override
+  public ImageStatistics getStatistics(String nameID) {
+    Snapshot snapshot = this.pin(nameID);
+    try {
+      return snapshot.recipe.statistics();
+    } finally {
+      snapshot.recipe.drop();
+    }
+  }
+
+  /**
+   * Gets a snapshot's image as a buffered image wrapping its rendered pixels, which never
+   * change once rendered, making it the first time only. The snapshot must be pinned
+   * @param snapshot snapshot to export
+   * @return read-only buffered image sharing pixels with the model
+   */
+  private BufferedImage export(Snapshot snapshot) {
+    SoftReference<BufferedImage> cached = snapshot.export;
+    BufferedImage image = cached == null ? null : cached.get();
+    if (image == null) {
+      image = BufferedImages.toBufferedImage(snapshot.recipe.render());
+      // kept with the snapshot, so it goes away when the name is rewritten
+      snapshot.export = new SoftReference<>(image);
     }
     return image;
   }
 
+  /**
+   * Sets whether every new image's statistics are computed along with its pixels, which point
+   * operations do in the same pass that writes the image. Useful when every result is shown
+   * with its histogram
+   * @param byProduct true to compute statistics with every image
+   */
+  public void setStatisticsByProduct(boolean byProduct) {
+    this.statisticsByProduct = byProduct;
+  }
+
   @Override
   public void imageToArray(String filename, String nameID) throws IOException {
     BufferedImage image;
@@ -302,42 +396,155 @@ public class ImageProcessingModelImpl implements ImageProcessingModel {
     } catch (IOException e) {
       throw new IllegalArgumentException("file not found");
     }
-    int width = image.getWidth();
-    int height = image.getHeight();
-    Color[][] colorArr = new Color[height][width];
-    for (int h = 0; h < height; h += 1) {
-      for (int w = 0; w < width; w += 1) {
-        colorArr[h][w] = new Color(image.getRGB(w,h));
+    if (image == null) {
+      // no reader recognized the file
+      throw new IllegalArgumentException("Unable to read file " + filename);
+    }
+    this.store(nameID, BufferedImages.toPacked(image));
+  }
+
+  /**
+   * Makes a new image from the one with the given name ID and gives it destName
+   * @param nameID ID of image
+   * @param destName ID to store the result under
+   * @param operation makes the recipe of the result from the recipe of the image
+   * @throws NullPointerException if there is no image with the given name ID
+   */
+  private void derive(String nameID, String destName, UnaryOperator<Recipe> operation) {
+    Recipe recipe = this.pin(nameID).recipe;
+    Recipe result;
+    try {
+      result = operation.apply(recipe);
+      result.retain();
+    } finally {
+      recipe.drop();
+    }
+    this.publish(destName, result);
+  }
+
+  /**
+   * Adds a point operation to the image with the given name ID and gives the result destName.
+   * If the image is an unrendered run of point operations the new one is fused onto it,
+   * otherwise it starts a new chain over the image. The recipe lock is held until the new chain
+   * holds its source, so the old chain can't start rendering and let go of that source first
+   * @param nameID ID of image
+   * @param destName ID to store the result under
+   * @param step adds the operation to a chain
+   * @throws NullPointerException if there is no image with the given name ID
+   */
+  private void extend(String nameID, String destName, UnaryOperator<PointChain> step) {
+    Recipe recipe = this.pin(nameID).recipe;
+    Recipe result;
+    try {
+      synchronized (recipe.lock()) {
+        PointChain chain = recipe instanceof PointChain && !recipe.isRendered()
+            ? (PointChain) recipe : PointChain.over(recipe);
+        result = step.apply(chain);
+        result.retain();
       }
+    } finally {
+      recipe.drop();
     }
-    this.images.put(nameID, colorArr);
+    this.publish(destName, result);
   }
 
   /**
-   * Computes filtered color for a pixel at curHeight and curWidth in the given 2d Color array image
-   * with the given kernel matrix
-   * @param image working image
-   * @param curHeight current height of pixel to compute color for
-   * @param curWidth current width of pixel to compute color for
-   * @param matrix kernel matrix
-   * @return Color after kernel was applied to filter the pixel
+   * Gets the snapshot for the image with the given name ID and holds a reference to its recipe,
+   * so it stays available while it is used even if the name is rewritten. The caller must drop
+   * the recipe when done
+   * @param nameID ID of image
+   * @return snapshot of the image
+   * @throws NullPointerException if there is no image with the given name ID
    */
-  private Color kernelComp(Color[][] image, int curHeight, int curWidth, double[][] matrix) {
-    int mid = matrix.length/2;
-    double red = 0;
-    double green=0;
-    double blue =0;
-    for (int row=0;row<matrix.length;row+=1) {
-      for (int col=0;col<matrix.length;col+=1) {
-        int curRow = curHeight - mid + row;
-        int curCol = curWidth - mid + col;
-        if (curRow >=0 && curRow < image.length && curCol>=0 && curCol < image[0].length) {
-          red += matrix[row][col] * image[curRow][curCol].getRed();
-          green += matrix[row][col] * image[curRow][curCol].getGreen();
-          blue += matrix[row][col] * image[curRow][curCol].getBlue();
-        }
+  private Snapshot pin(String nameID) {
+    return Objects.requireNonNull(this.tryPin(nameID));
+  }
+
+  /**
+   * Gets the snapshot for the image with the given name ID and holds a reference to its recipe,
+   * like pin, if there is one
+   * @param nameID ID of image
+   * @return snapshot of the image, or null if there is no image with that ID
+   */
+  private Snapshot tryPin(String nameID) {
+    // retained while the map holds the entry, so a rewrite can't drop it first
+    return this.images.computeIfPresent(nameID, (name, snapshot) -> {
+      snapshot.recipe.retain();
+      return snapshot;
+    });
+  }
+
+  /**
+   * Gets the image with the given name ID, running its recipe first if it hasn't run yet
+   * @param nameID ID of image
+   * @return image with that ID, or null if there isn't one
+   */
+  private PackedImage image(String nameID) {
+    Snapshot snapshot = this.tryPin(nameID);
+    if (snapshot == null) {
+      return null;
+    }
+    try {
+      return snapshot.recipe.render();
+    } finally {
+      snapshot.recipe.drop();
+    }
+  }
+
+  /**
+   * Stores an image under the given name ID, replacing anything already under it
+   * @param nameID ID to store the image under
+   * @param image image to store
+   */
+  private void store(String nameID, PackedImage image) {
+    Recipe recipe = Recipe.of(this.store, this.recipeLock, image);
+    recipe.retain();
+    this.publish(nameID, recipe);
+  }
+
+  @Override
+  public void clear() {
+    for (String nameID : this.images.keySet()) {
+      Snapshot old = this.images.remove(nameID);
+      if (old != null) {
+        old.recipe.drop();
       }
     }
-    return new Color(Math.min(Math.max((int)red, 0), 255), Math.min(Math.max((int)green, 0), 255), Math.min(Math.max((int)blue, 0), 255));
   }
-}
\ No newline at end of file
+
+  /**
+   * Gives a recipe the given name ID in one step, replacing anything already under it
+   * @param nameID ID to store the recipe under
+   * @param recipe recipe to store, with a reference already held for the name
+   */
+  private void publish(String nameID, Recipe recipe) {
+    if (this.statisticsByProduct) {
+      recipe.collectStatistics();
+    }
+    Snapshot old = this.images.put(nameID, new Snapshot(recipe));
+    if (old != null) {
+      old.recipe.drop();
+    }
+  }
+
+  /**
+   * What a name ID refers to: a recipe, and the exports made from it. A new snapshot is made
+   * each time the name is written
+   */
+  private static final class Snapshot {
+    private final Recipe recipe;
+    // getImage result, which shares pixels with the model and may be dropped by the garbage
+    // collector if memory runs low
+    private volatile SoftReference<BufferedImage> export;
+    // getPyramid result, dropped like the export
+    private volatile SoftReference<ImagePyramid> pyramid;
+
+    /**
+     * Creates a snapshot of a recipe, with nothing exported yet
+     * @param recipe recipe of the image
+     */
+    private Snapshot(Recipe recipe) {
+      this.recipe = recipe;
+    }
+  }
+}
@@ -34,6 +34,24 @@ public interface ImageProcessingModelState {
    */
   Color pixelRGB(int row, int col, String nameID);
 
+  /**
+   * Gets the packed 0xRRGGBB color of the pixel at (row, col) in the image with the given name ID
+   * @param row row of pixel
+   * @param col column of pixel
+   * @param nameID name ID of image in model
+   * @return packed color at pixel (row, col) in image with nameID
+   */
+  int getPixel(int row, int col, String nameID);
+
+  /**
+   * Gets the packed pixel storage of the image with the given name ID, without copying it. The
+   * returned image is a read-only view of the model's pixels; call copy on it for an image that
+   * can be changed
+   * @param nameID name ID of image in model
+   * @return read-only packed image with nameID
+   */
+  PackedImage getPackedImage(String nameID);
+
   /**
    * Returns if the given name ID exists in the model system
    * @param id to check for
@@ -42,9 +60,28 @@ public interface ImageProcessingModelState {
   boolean existingID(String id);
 
   /**
-   * Returns image in model with given nameID
+   * Returns image in model with given nameID. The image wraps the model's own pixels without
+   * copying them and is made once per version of the image, so every caller gets the same one.
+   * It is read-only: draw it or read it, and draw a copy to change it, since writing to it
+   * would change the model's image
    * @param nameID name ID of image to get
    * @return Image object
    */
   Image getImage(String nameID);
-}
\ No newline at end of file
+
+  /**
+   * Gets the image with the given name ID at every power of two of its resolution, for drawing
+   * it zoomed out. It is built once per version of the image
+   * @param nameID name ID of image
+   * @return pyramid of the image
+   */
+  ImagePyramid getPyramid(String nameID);
+
+  /**
+   * Gets the histogram and summary statistics of the image with the given name ID. They are
+   * computed once per version of the image, so asking again before it is rewritten is free
+   * @param nameID name ID of image
+   * @return statistics of the image
+   */
+  ImageStatistics getStatistics(String nameID);
+}
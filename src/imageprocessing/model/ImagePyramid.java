@@ -0,0 +1,185 @@
+package imageprocessing.model;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * An image at every power of two of its resolution, for drawing it at any zoom without scaling
+ * the full image each time. Level 0 is the image itself and each level after it is half the
+ * width and height of the one before (rounding up), down to a single pixel; every pixel is the
+ * average of the 2x2 block it covers in the level above, with edge pixels repeated when a side
+ * is odd. Large levels are built in parallel bands of rows. Every level is kept as a buffered
+ * image sharing its pixels, ready to draw.
+ */
+public final class ImagePyramid {
+  // levels with fewer pixels than this are built on the calling thread
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  // rows per parallel band
+  private static final int BAND_HEIGHT = 64;
+
+  private final BufferedImage[] levels;
+
+  /**
+   * Creates a pyramid from finished levels
+   * @param levels every level, full resolution first
+   */
+  private ImagePyramid(BufferedImage[] levels) {
+    this.levels = levels;
+  }
+
+  /**
+   * Builds the pyramid of an image
+   * @param image full resolution image
+   * @param full the image as a buffered image, used as level 0
+   * @return pyramid with the image as level 0
+   */
+  static ImagePyramid of(PackedImage image, BufferedImage full) {
+    int count = 1;
+    for (int width = image.getWidth(), height = image.getHeight(); width > 1 || height > 1;
+        width = (width + 1) / 2, height = (height + 1) / 2) {
+      count += 1;
+    }
+    BufferedImage[] levels = new BufferedImage[count];
+    levels[0] = full;
+    PackedImage level = image;
+    BooleanSupplier wanted = Cancellation.current();
+    for (int i = 1; i < count; i += 1) {
+      Cancellation.check(wanted);
+      level = halve(level);
+      levels[i] = BufferedImages.toBufferedImage(level);
+    }
+    return new ImagePyramid(levels);
+  }
+
+  /**
+   * Gets the number of levels
+   * @return number of levels, at least 1
+   */
+  public int getLevels() {
+    return this.levels.length;
+  }
+
+  /**
+   * Gets the width of the full resolution image
+   * @return width of level 0
+   */
+  public int getWidth() {
+    return this.levels[0].getWidth();
+  }
+
+  /**
+   * Gets the height of the full resolution image
+   * @return height of level 0
+   */
+  public int getHeight() {
+    return this.levels[0].getHeight();
+  }
+
+  /**
+   * Gets one level of the pyramid. Level 0 is the image getImage returns, sharing pixels with
+   * the model, and every caller gets the same images, so they are read-only
+   * @param level level number, 0 for full resolution
+   * @return image of that level
+   */
+  public BufferedImage getLevel(int level) {
+    return this.levels[level];
+  }
+
+  /**
+   * Picks the smallest level that still has at least one pixel per screen pixel at a zoom
+   * @param zoom screen pixels per full resolution pixel
+   * @return level to draw from
+   */
+  public int levelFor(double zoom) {
+    int level = 0;
+    while (level + 1 < this.levels.length && zoom <= 1.0 / (1 << (level + 1))) {
+      level += 1;
+    }
+    return level;
+  }
+
+  /**
+   * Builds the next level of a pyramid, in parallel if it is large
+   * @param src level to halve
+   * @return new image half the width and height, rounding up
+   */
+  private static PackedImage halve(PackedImage src) {
+    PackedImage dest = new PackedImage((src.getWidth() + 1) / 2, (src.getHeight() + 1) / 2);
+    if ((long) dest.getWidth() * dest.getHeight() < PARALLEL_THRESHOLD) {
+      halveRows(src, dest, 0, dest.getHeight());
+    } else {
+      ForkJoinPool.commonPool().invoke(new BandTask(src, dest, 0, dest.getHeight()));
+    }
+    return dest;
+  }
+
+  /**
+   * Averages 2x2 blocks of one level into a band of rows of the next. The red and blue channels
+   * are added together in one int and green in another, since four 8-bit values fit in 10 bits
+   * without reaching the next channel
+   * @param src level to halve
+   * @param dest next level, with no row padding
+   * @param top first row of the band
+   * @param bottom row after the last row of the band
+   */
+  private static void halveRows(PackedImage src, PackedImage dest, int top, int bottom) {
+    int[] in = src.getPixels();
+    int[] out = dest.getPixels();
+    int step = src.getPixelStride();
+    int lastCol = src.getWidth() - 1;
+    for (int row = top; row < bottom; row += 1) {
+      int upper = src.getOffset() + 2 * row * src.getStride();
+      int lower = src.getOffset() + Math.min(2 * row + 1, src.getHeight() - 1) * src.getStride();
+      int pixel = row * dest.getWidth();
+      for (int col = 0; col < dest.getWidth(); col += 1, pixel += 1) {
+        int left = 2 * col * step;
+        int right = Math.min(2 * col + 1, lastCol) * step;
+        int a = in[upper + left];
+        int b = in[upper + right];
+        int c = in[lower + left];
+        int d = in[lower + right];
+        int redBlue = (a & 0xFF00FF) + (b & 0xFF00FF) + (c & 0xFF00FF) + (d & 0xFF00FF);
+        int green = (a & 0xFF00) + (b & 0xFF00) + (c & 0xFF00) + (d & 0xFF00);
+        out[pixel] = ((redBlue + 0x20002) >>> 2 & 0xFF00FF) | ((green + 0x200) >>> 2 & 0xFF00);
+      }
+    }
+  }
+
+  /**
+   * Builds a band of rows of a level, splitting it in half until it is small enough to build
+   * directly
+   */
+  private static final class BandTask extends RecursiveAction {
+    private final PackedImage src;
+    private final PackedImage dest;
+    private final int top;
+    private final int bottom;
+
+    /**
+     * Creates a task building the given rows
+     * @param src level to halve
+     * @param dest next level
+     * @param top first row
+     * @param bottom row after the last row
+     */
+    private BandTask(PackedImage src, PackedImage dest, int top, int bottom) {
+      this.src = src;
+      this.dest = dest;
+      this.top = top;
+      this.bottom = bottom;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.bottom - this.top <= BAND_HEIGHT) {
+        halveRows(this.src, this.dest, this.top, this.bottom);
+        return;
+      }
+      int middle = (this.top + this.bottom) >>> 1;
+      invokeAll(new BandTask(this.src, this.dest, this.top, middle),
+          new BandTask(this.src, this.dest, middle, this.bottom));
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package imageprocessing.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Histogram and summary statistics of an image: how many pixels have each value (0-255) in the
+ * red, green, and blue channels and in their intensity (the average of the three, as intensity
+ * computes it), and the minimum, maximum, and mean of each. Large images are counted in parallel
+ * bands of rows, each with its own bins, which are added together at the end.
+ */
+public final class ImageStatistics {
+  public static final int RED = 0;
+  public static final int GREEN = 1;
+  public static final int BLUE = 2;
+  public static final int INTENSITY = 3;
+  // images with fewer pixels than this are counted on the calling thread
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  // rows per parallel band
+  private static final int BAND_HEIGHT = 64;
+
+  private final long[][] counts;
+  private final long pixels;
+
+  /**
+   * Creates statistics from finished bins
+   * @param counts pixel counts, indexed by channel then value
+   * @param pixels number of pixels counted
+   */
+  private ImageStatistics(long[][] counts, long pixels) {
+    this.counts = counts;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Counts every pixel of an image, in parallel if it is large
+   * @param image image to count
+   * @return statistics of the image
+   */
+  static ImageStatistics of(PackedImage image) {
+    Bins bins = new Bins();
+    if ((long) image.getWidth() * image.getHeight() < PARALLEL_THRESHOLD) {
+      bins.addRows(image, 0, image.getHeight());
+    } else {
+      bins = ForkJoinPool.commonPool().invoke(new BandTask(image, 0, image.getHeight()));
+    }
+    return bins.finish();
+  }
+
+  /**
+   * Gets the number of pixels with the given value in a channel
+   * @param channel RED, GREEN, BLUE, or INTENSITY
+   * @param value channel value, 0-255
+   * @return number of pixels
+   */
+  public long getCount(int channel, int value) {
+    return this.counts[channel][value];
+  }
+
+  /**
+   * Gets the largest count of any value in any channel, the height a histogram needs
+   * @return largest count
+   */
+  public long getMaxCount() {
+    long max = 0;
+    for (long[] channel : this.counts) {
+      for (long count : channel) {
+        max = Math.max(max, count);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Gets the number of pixels counted
+   * @return number of pixels in the image
+   */
+  public long getPixelCount() {
+    return this.pixels;
+  }
+
+  /**
+   * Gets the smallest value of a channel in the image
+   * @param channel RED, GREEN, BLUE, or INTENSITY
+   * @return smallest value, or 0 for an empty image
+   */
+  public int getMin(int channel) {
+    for (int value = 0; value < 256; value += 1) {
+      if (this.counts[channel][value] > 0) {
+        return value;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Gets the largest value of a channel in the image
+   * @param channel RED, GREEN, BLUE, or INTENSITY
+   * @return largest value, or 0 for an empty image
+   */
+  public int getMax(int channel) {
+    for (int value = 255; value >= 0; value -= 1) {
+      if (this.counts[channel][value] > 0) {
+        return value;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Gets the mean value of a channel in the image
+   * @param channel RED, GREEN, BLUE, or INTENSITY
+   * @return mean value, or 0 for an empty image
+   */
+  public double getMean(int channel) {
+    if (this.pixels == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (int value = 0; value < 256; value += 1) {
+      sum += (double) value * this.counts[channel][value];
+    }
+    return sum / this.pixels;
+  }
+
+  /**
+   * Counts pixels one at a time, so code already visiting every pixel of an image it creates can
+   * produce its statistics without another pass
+   */
+  static final class Bins {
+    private final int[][] counts = new int[4][256];
+    private long pixels;
+
+    /**
+     * Counts one pixel
+     * @param rgb packed 0xRRGGBB value
+     */
+    void add(int rgb) {
+      int red = PackedImage.red(rgb);
+      int green = PackedImage.green(rgb);
+      int blue = PackedImage.blue(rgb);
+      this.counts[RED][red] += 1;
+      this.counts[GREEN][green] += 1;
+      this.counts[BLUE][blue] += 1;
+      this.counts[INTENSITY][(red + green + blue) / 3] += 1;
+      this.pixels += 1;
+    }
+
+    /**
+     * Counts every pixel in a band of rows
+     * @param image image to count
+     * @param top first row of the band
+     * @param bottom row after the last row of the band
+     */
+    void addRows(PackedImage image, int top, int bottom) {
+      int[] in = image.getPixels();
+      int step = image.getPixelStride();
+      for (int row = top; row < bottom; row += 1) {
+        int pixel = image.getOffset() + row * image.getStride();
+        for (int col = 0; col < image.getWidth(); col += 1) {
+          this.add(in[pixel]);
+          pixel += step;
+        }
+      }
+    }
+
+    /**
+     * Adds another set of bins to these
+     * @param other bins to add
+     * @return these bins
+     */
+    Bins merge(Bins other) {
+      for (int channel = 0; channel < 4; channel += 1) {
+        for (int value = 0; value < 256; value += 1) {
+          this.counts[channel][value] += other.counts[channel][value];
+        }
+      }
+      this.pixels += other.pixels;
+      return this;
+    }
+
+    /**
+     * Turns these bins into statistics
+     * @return statistics of every pixel counted
+     */
+    ImageStatistics finish() {
+      long[][] totals = new long[4][256];
+      for (int channel = 0; channel < 4; channel += 1) {
+        for (int value = 0; value < 256; value += 1) {
+          totals[channel][value] = this.counts[channel][value];
+        }
+      }
+      return new ImageStatistics(totals, this.pixels);
+    }
+  }
+
+  /**
+   * Counts a band of rows, splitting it in half until it is small enough to count directly
+   */
+  private static final class BandTask extends RecursiveTask<Bins> {
+    private final PackedImage image;
+    private final int top;
+    private final int bottom;
+
+    /**
+     * Creates a task counting the given rows
+     * @param image image to count
+     * @param top first row
+     * @param bottom row after the last row
+     */
+    private BandTask(PackedImage image, int top, int bottom) {
+      this.image = image;
+      this.top = top;
+      this.bottom = bottom;
+    }
+
+    @Override
+    protected Bins compute() {
+      if (this.bottom - this.top <= BAND_HEIGHT) {
+        Bins bins = new Bins();
+        bins.addRows(this.image, this.top, this.bottom);
+        return bins;
+      }
+      int middle = (this.top + this.bottom) >>> 1;
+      BandTask upper = new BandTask(this.image, this.top, middle);
+      upper.fork();
+      Bins lower = new BandTask(this.image, middle, this.bottom).compute();
+      return upper.join().merge(lower);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package imageprocessing.model;
+
+/**
+ * Holds the pixels of every image the model has computed. Each image gets a handle when it is
+ * put in the store, and the model reads it back through that handle whenever it needs the
+ * pixels, so a store is free to move images out of memory between reads as long as it can bring
+ * them back unchanged. The model releases a handle once nothing can read it again.
+ *
+ * Models call a store from several threads at once and without holding any lock of their own,
+ * so a store must be thread safe, and may block a caller while it reads or writes a file
+ */
+public interface ImageStore {
+
+  /**
+   * Adds an image to the store. The image must not be changed afterwards
+   * @param image image to add
+   * @return handle to read the image back with
+   */
+  long put(PackedImage image);
+
+  /**
+   * Gets the image with the given handle, bringing it back into memory if it was moved out
+   * @param handle handle returned by put
+   * @return the image, with the same pixels it was put with
+   * @throws IllegalArgumentException if the handle isn't in the store
+   */
+  PackedImage get(long handle);
+
+  /**
+   * Removes an image from the store, freeing everything it used
+   * @param handle handle returned by put
+   */
+  void release(long handle);
+
+  /**
+   * Gets the number of reads that found their image in memory
+   * @return hit count
+   */
+  long getHits();
+
+  /**
+   * Gets the number of reads that had to bring their image back into memory
+   * @return miss count
+   */
+  long getMisses();
+
+  /**
+   * Gets the number of times an image was moved out of memory
+   * @return spill count
+   */
+  long getSpills();
+
+  /**
+   * Gets the number of bytes of pixels currently held in memory
+   * @return bytes in memory
+   */
+  long getBytesInMemory();
+}
@@ -0,0 +1,372 @@
+package imageprocessing.model;
+
+import java.util.Arrays;
+
+/**
+ * An image whose pixels are stored in a single primitive int array, one packed 0xRRGGBB value
+ * per pixel in row-major order. Rows are stride ints apart, so a row may be followed by unused
+ * padding.
+ *
+ * An image can also be a view of another image's array, sharing its pixels without copying
+ * them: flips, transposes, and crops only change where the first pixel is (the offset), how far
+ * apart rows are (the stride), and how far apart pixels in a row are (the pixel stride), any of
+ * which may be negative. The pixel at (row, col) is at offset + row * stride + col * pixel
+ * stride. Code that needs plain row-major pixels calls compact, which copies a view and returns
+ * any other image as is.
+ *
+ * A read-only view can be read like any other image but not written, so the model can hand out
+ * its own pixels without copying them. Views made from a read-only view are read-only too.
+ */
+public final class PackedImage {
+  private final int width;
+  private final int height;
+  private final int offset;
+  private final int stride;
+  private final int pixelStride;
+  private final int[] pixels;
+  private final boolean readOnly;
+
+  /**
+   * Creates a black image of the given size with no row padding
+   * @param width width of image in pixels
+   * @param height height of image in pixels
+   */
+  public PackedImage(int width, int height) {
+    this(width, height, width, new int[width * height]);
+  }
+
+  /**
+   * Creates an image backed by the given packed pixel array
+   * @param width width of image in pixels
+   * @param height height of image in pixels
+   * @param stride number of ints between the starts of two consecutive rows
+   * @param pixels packed 0xRRGGBB pixels, row-major
+   */
+  public PackedImage(int width, int height, int stride, int[] pixels) {
+    if (width < 0 || height < 0 || stride < width) {
+      throw new IllegalArgumentException("invalid image dimensions");
+    }
+    if (height > 0 && pixels.length < (height - 1) * stride + width) {
+      throw new IllegalArgumentException("pixel array too small for image dimensions");
+    }
+    this.width = width;
+    this.height = height;
+    this.offset = 0;
+    this.stride = stride;
+    this.pixelStride = 1;
+    this.pixels = pixels;
+    this.readOnly = false;
+  }
+
+  /**
+   * Creates a view of the given pixel array
+   * @param width width of image in pixels
+   * @param height height of image in pixels
+   * @param offset index of the pixel at (0, 0)
+   * @param stride number of ints from a pixel to the one below it
+   * @param pixelStride number of ints from a pixel to the one to its right
+   * @param pixels packed 0xRRGGBB pixels
+   * @param readOnly true if setRGB must refuse to change the pixels
+   */
+  private PackedImage(int width, int height, int offset, int stride, int pixelStride,
+      int[] pixels, boolean readOnly) {
+    this.width = width;
+    this.height = height;
+    this.offset = offset;
+    this.stride = stride;
+    this.pixelStride = pixelStride;
+    this.pixels = pixels;
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * Gets the width of this image
+   * @return width in pixels
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of this image
+   * @return height in pixels
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Gets the number of ints between the starts of two consecutive rows
+   * @return row stride, negative if rows are stored bottom to top
+   */
+  public int getStride() {
+    return this.stride;
+  }
+
+  /**
+   * Gets the index of the pixel at (0, 0) in the backing array
+   * @return offset of the first pixel
+   */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Gets the number of ints between two horizontally adjacent pixels
+   * @return pixel stride, 1 unless this image is a view
+   */
+  public int getPixelStride() {
+    return this.pixelStride;
+  }
+
+  /**
+   * Gets the backing pixel array (not a copy). Only the model reads it directly, since writing
+   * it would get around a read-only view
+   * @return packed 0xRRGGBB pixels, laid out by this image's offset and strides
+   */
+  int[] getPixels() {
+    return this.pixels;
+  }
+
+  /**
+   * Checks if this image refuses changes to its pixels
+   * @return true if setRGB throws
+   */
+  public boolean isReadOnly() {
+    return this.readOnly;
+  }
+
+  /**
+   * Gives a read-only view of this image, sharing its pixels
+   * @return view whose pixels can't be changed through it
+   */
+  PackedImage readOnly() {
+    if (this.readOnly) {
+      return this;
+    }
+    return new PackedImage(this.width, this.height, this.offset, this.stride, this.pixelStride,
+        this.pixels, true);
+  }
+
+  /**
+   * Checks if this image's pixels are plain row-major: the first pixel at index 0, rows stored
+   * top to bottom, and each row's pixels next to each other left to right
+   * @return true if getPixels can be read with just the stride
+   */
+  public boolean isCompact() {
+    return this.offset == 0 && this.pixelStride == 1 && this.stride >= this.width;
+  }
+
+  /**
+   * Gets this image with plain row-major pixels, copying it if it is a view
+   * @return this image if it is compact, or a compact copy of it
+   */
+  public PackedImage compact() {
+    if (this.isCompact()) {
+      return this;
+    }
+    return this.copy();
+  }
+
+  /**
+   * Copies this image into a new array of plain row-major pixels, which the copy doesn't share
+   * with anything
+   * @return writable compact copy
+   */
+  public PackedImage copy() {
+    PackedImage copy = new PackedImage(this.width, this.height);
+    for (int row = 0; row < this.height; row += 1) {
+      int in = this.offset + row * this.stride;
+      int out = row * this.width;
+      if (this.pixelStride == 1) {
+        System.arraycopy(this.pixels, in, copy.pixels, out, this.width);
+      } else {
+        for (int col = 0; col < this.width; col += 1) {
+          copy.pixels[out + col] = this.pixels[in + col * this.pixelStride];
+        }
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Gives a view of this image mirrored left to right, sharing its pixels
+   * @return mirrored view
+   */
+  public PackedImage flipHorizontal() {
+    return new PackedImage(this.width, this.height,
+        this.offset + (this.width - 1) * this.pixelStride, this.stride, -this.pixelStride,
+        this.pixels, this.readOnly);
+  }
+
+  /**
+   * Gives a view of this image mirrored top to bottom, sharing its pixels
+   * @return mirrored view
+   */
+  public PackedImage flipVertical() {
+    return new PackedImage(this.width, this.height,
+        this.offset + (this.height - 1) * this.stride, -this.stride, this.pixelStride,
+        this.pixels, this.readOnly);
+  }
+
+  /**
+   * Gives a view of this image mirrored along its main diagonal, so rows become columns,
+   * sharing its pixels. Rotating by 90 degrees is a transpose followed by a flip
+   * @return transposed view
+   */
+  public PackedImage transpose() {
+    return new PackedImage(this.height, this.width, this.offset, this.pixelStride, this.stride,
+        this.pixels, this.readOnly);
+  }
+
+  /**
+   * Gives a view of a rectangle of this image, sharing its pixels
+   * @param row row of the top left corner of the rectangle
+   * @param col column of the top left corner of the rectangle
+   * @param width width of the rectangle
+   * @param height height of the rectangle
+   * @return view of the rectangle
+   * @throws IllegalArgumentException if the rectangle isn't inside this image
+   */
+  public PackedImage crop(int row, int col, int width, int height) {
+    if (row < 0 || col < 0 || width < 0 || height < 0 || row + height > this.height
+        || col + width > this.width) {
+      throw new IllegalArgumentException("crop rectangle outside of image");
+    }
+    return new PackedImage(width, height,
+        this.offset + row * this.stride + col * this.pixelStride, this.stride, this.pixelStride,
+        this.pixels, this.readOnly);
+  }
+
+  /**
+   * Shrinks this image to the given size, averaging the block of pixels that lands on each new
+   * pixel. Every pixel of this image counts toward exactly one new pixel
+   * @param width new width, at most this image's width
+   * @param height new height, at most this image's height
+   * @return new image of the given size, or this image if the size doesn't change
+   * @throws IllegalArgumentException if the size isn't positive or is larger than this image
+   */
+  public PackedImage downscale(int width, int height) {
+    if (width <= 0 || height <= 0 || width > this.width || height > this.height) {
+      throw new IllegalArgumentException("downscaled size must be positive and within the image");
+    }
+    if (width == this.width && height == this.height) {
+      return this;
+    }
+    // new column each column of this image lands on, and how many land on each new column
+    int[] column = new int[this.width];
+    int[] columns = new int[width];
+    for (int col = 0; col < this.width; col += 1) {
+      column[col] = (int) ((long) col * width / this.width);
+      columns[column[col]] += 1;
+    }
+    PackedImage result = new PackedImage(width, height);
+    long[] sums = new long[width * 3];
+    int top = 0;
+    for (int row = 0; row < height; row += 1) {
+      // rows land on new row r * height / this.height, rounding down, as columns do
+      int bottom = (int) (((long) (row + 1) * this.height + height - 1) / height);
+      Arrays.fill(sums, 0);
+      for (int src = top; src < bottom; src += 1) {
+        int pixel = this.offset + src * this.stride;
+        for (int col = 0; col < this.width; col += 1) {
+          int rgb = this.pixels[pixel];
+          int sum = column[col] * 3;
+          sums[sum] += red(rgb);
+          sums[sum + 1] += green(rgb);
+          sums[sum + 2] += blue(rgb);
+          pixel += this.pixelStride;
+        }
+      }
+      long rows = bottom - top;
+      for (int col = 0; col < width; col += 1) {
+        long area = columns[col] * rows;
+        int sum = col * 3;
+        result.pixels[row * width + col] = pack((int) ((sums[sum] + area / 2) / area),
+            (int) ((sums[sum + 1] + area / 2) / area), (int) ((sums[sum + 2] + area / 2) / area));
+      }
+      top = bottom;
+    }
+    return result;
+  }
+
+  /**
+   * Gets the packed color of the pixel at (row, col)
+   * @param row row of pixel
+   * @param col column of pixel
+   * @return packed 0xRRGGBB value
+   */
+  public int getRGB(int row, int col) {
+    return this.pixels[this.offset + row * this.stride + col * this.pixelStride];
+  }
+
+  /**
+   * Sets the packed color of the pixel at (row, col)
+   * @param row row of pixel
+   * @param col column of pixel
+   * @param rgb packed 0xRRGGBB value
+   * @throws UnsupportedOperationException if this image is read-only
+   */
+  public void setRGB(int row, int col, int rgb) {
+    if (this.readOnly) {
+      throw new UnsupportedOperationException("image is read-only");
+    }
+    this.pixels[this.offset + row * this.stride + col * this.pixelStride] = rgb;
+  }
+
+  /**
+   * Number of bytes held by the backing pixel array, which views share with the image they
+   * were made from
+   * @return size of pixel data in bytes
+   */
+  public long byteSize() {
+    return 4L * this.pixels.length;
+  }
+
+  /**
+   * Packs the given channel values (each 0-255) into a single 0xRRGGBB int
+   * @param red red channel
+   * @param green green channel
+   * @param blue blue channel
+   * @return packed value
+   */
+  public static int pack(int red, int green, int blue) {
+    return (red << 16) | (green << 8) | blue;
+  }
+
+  /**
+   * Red channel of a packed value
+   * @param rgb packed 0xRRGGBB value
+   * @return red channel, 0-255
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Green channel of a packed value
+   * @param rgb packed 0xRRGGBB value
+   * @return green channel, 0-255
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Blue channel of a packed value
+   * @param rgb packed 0xRRGGBB value
+   * @return blue channel, 0-255
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Clamps a channel value to 0-255
+   * @param value value to clamp
+   * @return value limited to the range of one channel
+   */
+  public static int clamp(int value) {
+    return Math.max(Math.min(value, 255), 0);
+  }
+}
@@ -0,0 +1,167 @@
+package imageprocessing.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A run of point operations (each output pixel depends only on the same input pixel) waiting to
+ * be applied to a source image. Adjacent lookup tables are composed into one, and a lookup table
+ * next to a color matrix is folded into it, so brighten, sepia, brighten is a single table-driven
+ * step, and extracting a component right after a color matrix just picks one of its rows. Steps
+ * that can't be folded, like one color matrix after another or value and intensity, are run one
+ * after another on each pixel, so every operation still truncates and clamps its result exactly
+ * as it would on its own. Rendering makes one pass over the source and writes only the final
+ * image; none of the intermediates exist as images.
+ *
+ * Extending a chain gives a new one and leaves the old one unchanged, so each name ID can keep
+ * its own. Only a chain that hasn't been rendered can be extended, since rendering lets go of
+ * the source.
+ */
+final class PointChain extends Recipe {
+  // steps that nothing more can be folded into, in order
+  private final List<IntUnaryOperator> sealed;
+  // last step, a ChannelLut or ColorMatrix later steps may still fold into, or null
+  private final Object open;
+
+  /**
+   * Creates a chain over the given source
+   * @param source recipe producing the image the steps are applied to
+   * @param sealed steps that nothing more can be folded into
+   * @param open last step, or null
+   */
+  private PointChain(Recipe source, List<IntUnaryOperator> sealed, Object open) {
+    super(source);
+    this.sealed = sealed;
+    this.open = open;
+  }
+
+  /**
+   * Starts an empty chain over the given source
+   * @param source recipe producing the image the steps are applied to
+   * @return empty chain
+   */
+  static PointChain over(Recipe source) {
+    return new PointChain(source, List.of(), null);
+  }
+
+  /**
+   * Gives this chain followed by a lookup table
+   * @param lut lookup table to apply
+   * @return extended chain
+   */
+  PointChain then(ChannelLut lut) {
+    if (this.open instanceof ChannelLut) {
+      return new PointChain(this.getSource(), this.sealed, ((ChannelLut) this.open).then(lut));
+    }
+    if (this.open instanceof ColorMatrix) {
+      return new PointChain(this.getSource(), this.sealed, ((ColorMatrix) this.open).then(lut));
+    }
+    return new PointChain(this.getSource(), this.sealed, lut);
+  }
+
+  /**
+   * Gives this chain followed by a color matrix
+   * @param matrix color matrix to apply
+   * @return extended chain
+   */
+  PointChain then(ColorMatrix matrix) {
+    if (this.open instanceof ChannelLut) {
+      return new PointChain(this.getSource(), this.sealed, matrix.after((ChannelLut) this.open));
+    }
+    return new PointChain(this.getSource(), this.sealedSteps(), matrix);
+  }
+
+  /**
+   * Gives this chain followed by extracting one component as a grey pixel. After a color matrix
+   * this selects one of its rows, and after a lookup table it moves that channel's table past
+   * the extraction, so either can still be folded into
+   * @param channel 0 for red, 1 for green, 2 for blue
+   * @return extended chain
+   */
+  PointChain component(int channel) {
+    if (this.open instanceof ColorMatrix) {
+      ColorMatrix selected = ((ColorMatrix) this.open).select(channel);
+      return new PointChain(this.getSource(), this.sealed, selected);
+    }
+    int shift = 16 - 8 * channel;
+    IntUnaryOperator extract = rgb -> {
+      int component = (rgb >> shift) & 0xFF;
+      return PackedImage.pack(component, component, component);
+    };
+    List<IntUnaryOperator> steps = new ArrayList<>(this.sealed);
+    steps.add(extract);
+    Object next = this.open instanceof ChannelLut ? ((ChannelLut) this.open).broadcast(channel)
+        : null;
+    return new PointChain(this.getSource(), List.copyOf(steps), next);
+  }
+
+  /**
+   * Gives this chain followed by an arbitrary point operation, which nothing is folded into
+   * @param step function from a packed 0xRRGGBB input pixel to a packed output pixel
+   * @return extended chain
+   */
+  PointChain then(IntUnaryOperator step) {
+    List<IntUnaryOperator> steps = new ArrayList<>(this.sealedSteps());
+    steps.add(step);
+    return new PointChain(this.getSource(), List.copyOf(steps), null);
+  }
+
+  @Override
+  PackedImage compute(PackedImage src) {
+    List<IntUnaryOperator> steps = this.sealedSteps();
+    if (steps.isEmpty()) {
+      return src;
+    }
+    // counting each pixel as it is written saves a second pass when statistics are wanted
+    ImageStatistics.Bins bins = this.collectsStatistics() ? new ImageStatistics.Bins() : null;
+    if (bins == null && steps.size() == 1 && this.open != null) {
+      return this.open instanceof ChannelLut ? ((ChannelLut) this.open).apply(src)
+          : ((ColorMatrix) this.open).apply(src);
+    }
+    IntUnaryOperator[] ops = steps.toArray(new IntUnaryOperator[0]);
+    PackedImage dest = new PackedImage(src.getWidth(), src.getHeight());
+    int[] in = src.getPixels();
+    int[] out = dest.getPixels();
+    int step = src.getPixelStride();
+    BooleanSupplier wanted = Cancellation.current();
+    for (int height = 0; height < dest.getHeight(); height += 1) {
+      Cancellation.check(wanted);
+      int srcPixel = src.getOffset() + height * src.getStride();
+      int destRow = height * dest.getStride();
+      for (int width = 0; width < dest.getWidth(); width += 1) {
+        int rgb = in[srcPixel];
+        srcPixel += step;
+        for (IntUnaryOperator op : ops) {
+          rgb = op.applyAsInt(rgb);
+        }
+        out[destRow + width] = rgb;
+        if (bins != null) {
+          bins.add(rgb);
+        }
+      }
+    }
+    if (bins != null) {
+      this.setStatistics(bins.finish());
+    }
+    return dest;
+  }
+
+  /**
+   * Gets every step including the open one, in order
+   * @return steps of this chain
+   */
+  private List<IntUnaryOperator> sealedSteps() {
+    if (this.open == null) {
+      return this.sealed;
+    }
+    List<IntUnaryOperator> steps = new ArrayList<>(this.sealed);
+    if (this.open instanceof ChannelLut) {
+      steps.add(((ChannelLut) this.open)::apply);
+    } else {
+      steps.add(((ColorMatrix) this.open)::apply);
+    }
+    return List.copyOf(steps);
+  }
+}
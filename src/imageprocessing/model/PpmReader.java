@@ -0,0 +1,334 @@
+package imageprocessing.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads Netpbm PPM and PGM files straight into a packed image. Plain (P3/P2) files are tokenized
+ * byte by byte out of a fixed size buffer refilled from a file channel, so no line or token
+ * strings are created and memory use does not grow with the file size. Binary (P6/P5) files
+ * have their header tokenized the same way and their pixel data memory-mapped and copied into the
+ * raster in bulk.
+ */
+final class PpmReader {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Creates a reader over the given channel
+   * @param channel channel to read bytes from
+   */
+  private PpmReader(ReadableByteChannel channel) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.buffer.flip();
+  }
+
+  /**
+   * Checks if the file at the given path starts with a PPM or PGM magic number
+   * @param filename path of file to check
+   * @return true if the file begins with P2, P3, P5, or P6
+   * @throws IOException if the file can't be read
+   */
+  static boolean isNetpbm(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(2);
+      while (magic.hasRemaining() && channel.read(magic) >= 0) {
+        // keep reading until both bytes are in
+      }
+      if (magic.hasRemaining() || magic.get(0) != 'P') {
+        return false;
+      }
+      byte kind = magic.get(1);
+      return kind == '2' || kind == '3' || kind == '5' || kind == '6';
+    }
+  }
+
+  /**
+   * Reads the PPM (P3/P6) or PGM (P2/P5) file at the given path. Channel values are rescaled from
+   * the file's maxval to 0-255, and grey samples are copied into all three channels
+   * @param filename path of file to read
+   * @return image read from the file
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the file isn't a valid PPM or PGM file
+   */
+  static PackedImage read(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+      PpmReader reader = new PpmReader(channel);
+      int[] header = reader.header(channel);
+      int kind = header[0];
+      int width = header[1];
+      int height = header[2];
+      int maxval = header[3];
+      boolean grey = kind == '2' || kind == '5';
+      if (kind == '3' || kind == '2') {
+        return reader.readPlain(width, height, maxval, grey);
+      }
+      return readBinary(channel, channel.position() - reader.buffer.remaining(), width, height,
+          maxval, grey);
+    }
+  }
+
+  /**
+   * Checks the header of the PPM or PGM file at the given path without reading its pixel data,
+   * the same way read does before it allocates the image
+   * @param filename path of file to check
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the header isn't valid or asks for more than the file
+   *         holds
+   */
+  static void check(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+      new PpmReader(channel).header(channel);
+    }
+  }
+
+  /**
+   * Reads and checks the header, leaving the reader at the first sample
+   * @param channel channel of the file, which this reader reads from
+   * @return magic number kind ('2', '3', '5', or '6'), width, height, and maxval
+   * @throws IOException if the channel can't be read
+   * @throws IllegalArgumentException if the header isn't valid or asks for more than the file
+   *         holds
+   */
+  private int[] header(FileChannel channel) throws IOException {
+    this.skipSeparators();
+    int kind = this.nextByte() == 'P' ? this.nextByte() : -1;
+    if (kind != '2' && kind != '3' && kind != '5' && kind != '6') {
+      throw new IllegalArgumentException(
+          "Invalid PPM file: file should begin with P3, P6, P2, or P5");
+    }
+    int width = this.nextInt();
+    int height = this.nextInt();
+    int maxval = this.nextInt();
+    if (width <= 0 || height <= 0 || maxval <= 0 || maxval > 65535
+        || (long) width * height > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Invalid PPM header");
+    }
+    boolean grey = kind == '2' || kind == '5';
+    long samples = (long) width * height * (grey ? 1 : 3);
+    long available = channel.size() - (channel.position() - this.buffer.remaining());
+    if (kind == '3' || kind == '2') {
+      // every sample is at least a digit and a separator, except maybe the last, so a header
+      // asking for more than the file holds is rejected before the image is allocated
+      if (available < 2 * samples - 1) {
+        throw new IllegalArgumentException("Unexpected end of PPM file");
+      }
+    } else if (available < samples * (maxval < 256 ? 1 : 2)) {
+      throw new IllegalArgumentException("Unexpected end of PPM file");
+    }
+    return new int[] {kind, width, height, maxval};
+  }
+
+  /**
+   * Parses the pixel data of a plain file from the channel
+   * @param width width of image
+   * @param height height of image
+   * @param maxval maximum sample value declared in the header
+   * @param grey true if each pixel is one grey sample rather than three color samples
+   * @return image read from the channel
+   * @throws IOException if the channel can't be read
+   */
+  private PackedImage readPlain(int width, int height, int maxval, boolean grey)
+      throws IOException {
+    PackedImage image = new PackedImage(width, height);
+    int[] pixels = image.getPixels();
+    for (int i = 0; i < pixels.length; i += 1) {
+      if (grey) {
+        int v = this.nextSample(maxval);
+        pixels[i] = PackedImage.pack(v, v, v);
+      } else {
+        int r = this.nextSample(maxval);
+        int g = this.nextSample(maxval);
+        int b = this.nextSample(maxval);
+        pixels[i] = PackedImage.pack(r, g, b);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Maps the pixel data of a binary file and copies it into a new image in bulk, one row at a
+   * time. Samples are one byte if maxval is below 256 and two big-endian bytes otherwise
+   * @param channel channel of the file
+   * @param dataStart offset of the first pixel byte in the file
+   * @param width width of image
+   * @param height height of image
+   * @param maxval maximum sample value declared in the header
+   * @param grey true if each pixel is one grey sample rather than three color samples
+   * @return image read from the file
+   * @throws IOException if the file can't be mapped
+   */
+  private static PackedImage readBinary(FileChannel channel, long dataStart, int width,
+      int height, int maxval, boolean grey) throws IOException {
+    int bytesPerSample = maxval < 256 ? 1 : 2;
+    int rowBytes = width * (grey ? 1 : 3) * bytesPerSample;
+    PackedImage image = new PackedImage(width, height);
+    int[] pixels = image.getPixels();
+    byte[] row = new byte[rowBytes];
+    int[] rgb = new int[3];
+    int rowsPerMap = Math.max(1, Integer.MAX_VALUE / rowBytes);
+    for (int firstRow = 0; firstRow < height; firstRow += rowsPerMap) {
+      int rows = Math.min(rowsPerMap, height - firstRow);
+      MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+          dataStart + (long) firstRow * rowBytes, (long) rows * rowBytes);
+      for (int h = firstRow; h < firstRow + rows; h += 1) {
+        data.get(row);
+        int out = h * width;
+        if (bytesPerSample == 1 && maxval == 255) {
+          if (grey) {
+            for (int w = 0; w < width; w += 1) {
+              int v = row[w] & 0xFF;
+              pixels[out + w] = PackedImage.pack(v, v, v);
+            }
+          } else {
+            for (int w = 0, i = 0; w < width; w += 1, i += 3) {
+              pixels[out + w] = PackedImage.pack(row[i] & 0xFF, row[i + 1] & 0xFF,
+                  row[i + 2] & 0xFF);
+            }
+          }
+        } else {
+          int samples = grey ? 1 : 3;
+          for (int w = 0; w < width; w += 1) {
+            for (int c = 0; c < samples; c += 1) {
+              int i = (w * samples + c) * bytesPerSample;
+              int v = bytesPerSample == 1 ? row[i] & 0xFF
+                  : ((row[i] & 0xFF) << 8) | (row[i + 1] & 0xFF);
+              rgb[c] = scale(v, maxval);
+            }
+            pixels[out + w] = grey ? PackedImage.pack(rgb[0], rgb[0], rgb[0])
+                : PackedImage.pack(rgb[0], rgb[1], rgb[2]);
+          }
+        }
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Reads the next sample and rescales it from 0-maxval to 0-255
+   * @param maxval maximum sample value declared in the header
+   * @return sample scaled to 0-255
+   * @throws IOException if the channel can't be read
+   */
+  private int nextSample(int maxval) throws IOException {
+    int value = this.nextInt();
+    return scale(value, maxval);
+  }
+
+  /**
+   * Rescales a sample from 0-maxval to 0-255, rounding to the nearest value
+   * @param value sample to rescale
+   * @param maxval maximum sample value declared in the header
+   * @return sample scaled to 0-255
+   */
+  private static int scale(int value, int maxval) {
+    if (value > maxval) {
+      throw new IllegalArgumentException("Color parameter outside of expected range");
+    }
+    return maxval == 255 ? value : (value * 255 + maxval / 2) / maxval;
+  }
+
+  /**
+   * Reads the next unsigned decimal integer, skipping whitespace and comments before it
+   * @return the integer read
+   * @throws IOException if the channel can't be read
+   */
+  private int nextInt() throws IOException {
+    this.skipSeparators();
+    int c = this.nextByte();
+    if (c < '0' || c > '9') {
+      throw new IllegalArgumentException(c < 0 ? "Unexpected end of PPM file"
+          : "Invalid PPM file: expected a number");
+    }
+    int value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > 65535) {
+        throw new IllegalArgumentException("Invalid PPM file: number out of range");
+      }
+      c = this.nextByte();
+    }
+    if (c >= 0 && !isWhitespace(c) && c != '#') {
+      throw new IllegalArgumentException("Invalid PPM file: expected a number");
+    }
+    if (c == '#') {
+      this.skipComment();
+    }
+    return value;
+  }
+
+  /**
+   * Skips whitespace and '#' comments (which run to the end of their line)
+   * @throws IOException if the channel can't be read
+   */
+  private void skipSeparators() throws IOException {
+    while (true) {
+      if (!this.buffer.hasRemaining() && !this.fill()) {
+        return;
+      }
+      int c = this.buffer.get(this.buffer.position());
+      if (c == '#') {
+        this.skipComment();
+      } else if (isWhitespace(c)) {
+        this.buffer.get();
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Skips to the end of the current line
+   * @throws IOException if the channel can't be read
+   */
+  private void skipComment() throws IOException {
+    int c = this.nextByte();
+    while (c >= 0 && c != '\n' && c != '\r') {
+      c = this.nextByte();
+    }
+  }
+
+  /**
+   * Reads the next byte from the channel
+   * @return next byte, or -1 at the end of the file
+   * @throws IOException if the channel can't be read
+   */
+  private int nextByte() throws IOException {
+    if (!this.buffer.hasRemaining() && !this.fill()) {
+      return -1;
+    }
+    return this.buffer.get() & 0xFF;
+  }
+
+  /**
+   * Refills the buffer from the channel
+   * @return false if the end of the file was reached
+   * @throws IOException if the channel can't be read
+   */
+  private boolean fill() throws IOException {
+    this.buffer.clear();
+    int read = 0;
+    while (read == 0) {
+      read = this.channel.read(this.buffer);
+    }
+    this.buffer.flip();
+    return read > 0;
+  }
+
+  /**
+   * Checks if the given byte is PPM whitespace
+   * @param c byte to check
+   * @return true if c is a space, tab, or line break
+   */
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+  }
+}
@@ -0,0 +1,145 @@
+package imageprocessing.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes packed images as Netpbm files. Plain (P3) files are streamed: integers are formatted
+ * straight into one reusable byte buffer that is flushed to the file channel whenever it fills, so
+ * memory use is the same for any image size. Binary (P6/P5) files are written by sizing the file
+ * up front, memory-mapping it, and filling the mapping one row at a time
+ */
+final class PpmWriter {
+  private static final int BUFFER_SIZE = 1 << 16;
+  // longest pixel line is "255 255 255 \n"
+  private static final int MAX_PIXEL_BYTES = 13;
+
+  private PpmWriter() {
+  }
+
+  /**
+   * Writes the given image as a plain PPM (P3) with a maxval of 255, one pixel per line
+   * @param image image to write
+   * @param filename path to write to
+   * @return number of bytes written
+   * @throws IOException if the file can't be written
+   */
+  static long writePlain(PackedImage image, String filename) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = image.getPixels();
+    int step = image.getPixelStride();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    long written = 0;
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      buffer.put(("P3\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+      for (int h = 0; h < height; h += 1) {
+        int in = image.getOffset() + h * image.getStride();
+        for (int w = 0; w < width; w += 1) {
+          if (buffer.remaining() < MAX_PIXEL_BYTES) {
+            written += flush(channel, buffer);
+          }
+          int rgb = pixels[in + w * step];
+          putChannel(buffer, PackedImage.red(rgb));
+          buffer.put((byte) ' ');
+          putChannel(buffer, PackedImage.green(rgb));
+          buffer.put((byte) ' ');
+          putChannel(buffer, PackedImage.blue(rgb));
+          buffer.put((byte) ' ');
+          buffer.put((byte) '\n');
+        }
+      }
+      written += flush(channel, buffer);
+    }
+    return written;
+  }
+
+  /**
+   * Writes the decimal digits of a channel value (0-255) into the buffer
+   * @param buffer buffer to write into
+   * @param value channel value
+   */
+  private static void putChannel(ByteBuffer buffer, int value) {
+    if (value >= 100) {
+      buffer.put((byte) ('0' + value / 100));
+      buffer.put((byte) ('0' + value / 10 % 10));
+    } else if (value >= 10) {
+      buffer.put((byte) ('0' + value / 10));
+    }
+    buffer.put((byte) ('0' + value % 10));
+  }
+
+  /**
+   * Writes everything in the buffer to the channel and clears it for reuse
+   * @param channel channel to write to
+   * @param buffer buffer holding bytes to write
+   * @return number of bytes written
+   * @throws IOException if the channel can't be written
+   */
+  private static int flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    int bytes = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+    return bytes;
+  }
+
+  /**
+   * Writes the given image as a binary PPM (P6) or, if grey is true, a binary PGM (P5) with a
+   * maxval of 255. Grey samples are the average of the three channels, which is exact for images
+   * that are already greyscale
+   * @param image image to write
+   * @param filename path to write to
+   * @param grey true to write one grey sample per pixel instead of three color samples
+   * @throws IOException if the file can't be written
+   */
+  static void writeBinary(PackedImage image, String filename, boolean grey) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    byte[] header = ((grey ? "P5\n" : "P6\n") + width + " " + height + "\n255\n")
+        .getBytes(StandardCharsets.US_ASCII);
+    int rowBytes = width * (grey ? 1 : 3);
+    int[] pixels = image.getPixels();
+    int step = image.getPixelStride();
+    byte[] row = new byte[rowBytes];
+    try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, header.length);
+      out.put(header);
+      long position = header.length;
+      int rowsPerMap = Math.max(1, Integer.MAX_VALUE / Math.max(1, rowBytes));
+      for (int firstRow = 0; firstRow < height; firstRow += rowsPerMap) {
+        int rows = Math.min(rowsPerMap, height - firstRow);
+        out = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) rows * rowBytes);
+        for (int h = firstRow; h < firstRow + rows; h += 1) {
+          int in = image.getOffset() + h * image.getStride();
+          if (grey) {
+            for (int w = 0; w < width; w += 1) {
+              int rgb = pixels[in + w * step];
+              row[w] = (byte) ((PackedImage.red(rgb) + PackedImage.green(rgb)
+                  + PackedImage.blue(rgb)) / 3);
+            }
+          } else {
+            for (int w = 0, i = 0; w < width; w += 1, i += 3) {
+              int rgb = pixels[in + w * step];
+              row[i] = (byte) (rgb >> 16);
+              row[i + 1] = (byte) (rgb >> 8);
+              row[i + 2] = (byte) rgb;
+            }
+          }
+          out.put(row);
+        }
+        position += (long) rows * rowBytes;
+      }
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package imageprocessing.model;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * How to produce an image: either the image itself, or a source recipe and an operation to run
+ * on it. The model stores a recipe under each name ID and only runs it the first time its pixels
+ * are needed, so names that are never saved, shown, or used by a rendered image are never
+ * computed. A recipe puts its result in an image store once it has run and lets go of its
+ * source, so later reads only cost a store lookup.
+ *
+ * Recipes hold their source recipe rather than its name ID, so overwriting a name doesn't change
+ * anything already derived from it. Each recipe counts the references to it from name IDs and
+ * from recipes that still need it as a source. When that count drops to zero the recipe releases
+ * its image from the store, or, if it never ran, its own reference to its source.
+ *
+ * Recipes can be used from several threads. Every recipe of a model shares one lock, and
+ * changes to references and to whether a recipe has run are made while holding it, but the
+ * operation itself runs without it, so independent recipes render in parallel. The store is
+ * also used without the lock, since it may read or write a file: a recipe's handle can't be
+ * released while anyone holds a reference to it, and a recipe only gets a handle once its image
+ * is in the store. A thread that asks for a recipe another thread is already running waits for
+ * that result instead of computing it again. A render given up on through Cancellation leaves
+ * the recipe as it was before, still holding its source.
+ */
+abstract class Recipe {
+  private final ImageStore store;
+  // guards the fields below of this recipe and of every other recipe of the same model
+  private final Object lock;
+  private final int width;
+  private final int height;
+  // recipe producing the input, or null once this recipe has run
+  private Recipe source;
+  // true while a thread is running this recipe's operation
+  private boolean rendering;
+  // store handle of the result, or -1 if this recipe hasn't run
+  private long handle;
+  private int references;
+  // true once this recipe holds a reference to its source
+  private boolean attached;
+  // statistics of the image, or null if they haven't been computed
+  private volatile ImageStatistics statistics;
+  // true to compute statistics as soon as the image is
+  private volatile boolean collectStatistics;
+
+  /**
+   * Creates a recipe that runs on the image of the given source and keeps its size
+   * @param source recipe producing the input
+   */
+  Recipe(Recipe source) {
+    this(source, source.width, source.height);
+  }
+
+  /**
+   * Creates a recipe that runs on the image of the given source and produces an image of the
+   * given size
+   * @param source recipe producing the input
+   * @param width width of the image produced
+   * @param height height of the image produced
+   */
+  private Recipe(Recipe source, int width, int height) {
+    this.store = source.store;
+    this.lock = source.lock;
+    this.width = width;
+    this.height = height;
+    this.source = source;
+    this.handle = -1;
+  }
+
+  /**
+   * Creates a recipe for an image that already exists, adding it to the store
+   * @param store store to hold the image
+   * @param lock lock shared by the recipes of the model
+   * @param image the image
+   */
+  private Recipe(ImageStore store, Object lock, PackedImage image) {
+    this.store = store;
+    this.lock = lock;
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    this.source = null;
+    this.handle = store.put(image);
+  }
+
+  /**
+   * Wraps an image that already exists
+   * @param store store to hold the image
+   * @param lock lock shared by the recipes of the model
+   * @param image the image
+   * @return recipe producing that image
+   */
+  static Recipe of(ImageStore store, Object lock, PackedImage image) {
+    return new Recipe(store, lock, image) {
+      @Override
+      PackedImage compute(PackedImage src) {
+        throw new IllegalStateException("image already exists");
+      }
+    };
+  }
+
+  /**
+   * Creates a recipe running an operation that keeps the size of its source
+   * @param source recipe producing the input
+   * @param operation function from the input image to a new output image of the same size
+   * @return recipe producing the output
+   */
+  static Recipe derive(Recipe source, UnaryOperator<PackedImage> operation) {
+    return new Recipe(source) {
+      @Override
+      PackedImage compute(PackedImage src) {
+        return operation.apply(src);
+      }
+    };
+  }
+
+  /**
+   * Creates a recipe running an operation that changes the size of its source
+   * @param source recipe producing the input
+   * @param width width of the image the operation produces
+   * @param height height of the image the operation produces
+   * @param operation function from the input image to a new output image of the given size
+   * @return recipe producing the output
+   */
+  static Recipe derive(Recipe source, int width, int height,
+      UnaryOperator<PackedImage> operation) {
+    return new Recipe(source, width, height) {
+      @Override
+      PackedImage compute(PackedImage src) {
+        return operation.apply(src);
+      }
+    };
+  }
+
+  /**
+   * Runs this recipe's operation
+   * @param src image produced by the source
+   * @return new image holding the result
+   */
+  abstract PackedImage compute(PackedImage src);
+
+  /**
+   * Gets the recipe producing this recipe's input
+   * @return source recipe, or null if this recipe has already run
+   */
+  final Recipe getSource() {
+    synchronized (this.lock) {
+      return this.source;
+    }
+  }
+
+  /**
+   * Gets the width of the image this recipe produces, without running it
+   * @return width in pixels
+   */
+  final int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of the image this recipe produces, without running it
+   * @return height in pixels
+   */
+  final int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Checks if this recipe has produced its image or is producing it now, so its source may
+   * already be gone
+   * @return true if render has been called
+   */
+  final boolean isRendered() {
+    synchronized (this.lock) {
+      return this.handle >= 0 || this.rendering;
+    }
+  }
+
+  /**
+   * Gets the lock that guards the references and state of this recipe and every other recipe
+   * of the same model
+   * @return lock object
+   */
+  final Object lock() {
+    return this.lock;
+  }
+
+  /**
+   * Gets the image this recipe produces, computing it the first time. The caller must hold a
+   * reference to this recipe until render returns
+   * @return the image
+   */
+  final PackedImage render() {
+    Recipe source;
+    long handle;
+    synchronized (this.lock) {
+      boolean interrupted = false;
+      while (this.rendering) {
+        try {
+          this.lock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      handle = this.handle;
+      source = this.source;
+      this.rendering = handle < 0;
+    }
+    if (handle >= 0) {
+      return this.store.get(handle);
+    }
+    PackedImage image;
+    try {
+      PackedImage input = source.render();
+      Cancellation.check(Cancellation.current());
+      image = this.compute(input);
+      if (this.collectStatistics && this.statistics == null) {
+        this.statistics = ImageStatistics.of(image);
+      }
+      handle = this.store.put(image);
+    } catch (RuntimeException | Error e) {
+      synchronized (this.lock) {
+        this.rendering = false;
+        this.lock.notifyAll();
+      }
+      throw e;
+    }
+    Recipe released;
+    synchronized (this.lock) {
+      this.handle = handle;
+      released = this.attached ? this.source : null;
+      this.source = null;
+      this.rendering = false;
+      this.lock.notifyAll();
+    }
+    if (released != null) {
+      released.drop();
+    }
+    return image;
+  }
+
+  /**
+   * Gets the statistics of the image this recipe produces, computing them the first time
+   * @return statistics of the image
+   */
+  final ImageStatistics statistics() {
+    if (this.statistics == null) {
+      this.statistics = ImageStatistics.of(this.render());
+    }
+    return this.statistics;
+  }
+
+  /**
+   * Asks for statistics to be computed along with the image rather than when first requested
+   */
+  final void collectStatistics() {
+    this.collectStatistics = true;
+  }
+
+  /**
+   * Checks if compute should produce statistics of its result
+   * @return true if statistics are computed along with the image
+   */
+  final boolean collectsStatistics() {
+    return this.collectStatistics;
+  }
+
+  /**
+   * Records statistics compute produced while creating the image, so render doesn't count the
+   * image again
+   * @param statistics statistics of the image being computed
+   */
+  final void setStatistics(ImageStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /**
+   * Adds a reference to this recipe. The first one also makes it hold on to its source
+   */
+  final void retain() {
+    synchronized (this.lock) {
+      this.references += 1;
+      if (!this.attached && this.source != null) {
+        this.attached = true;
+        this.source.retain();
+      }
+    }
+  }
+
+  /**
+   * Removes a reference to this recipe, releasing its image or source after the last one
+   */
+  final void drop() {
+    long released;
+    synchronized (this.lock) {
+      released = this.unreference();
+    }
+    if (released >= 0) {
+      this.store.release(released);
+    }
+  }
+
+  /**
+   * Removes a reference to this recipe while holding the lock. After the last one it lets go of
+   * its source, which may in turn let go of its own
+   * @return handle of the image to release from the store, or -1 if there is none
+   */
+  private long unreference() {
+    this.references -= 1;
+    if (this.references > 0) {
+      return -1;
+    }
+    long released = this.handle;
+    if (released < 0 && this.attached) {
+      released = this.source.unreference();
+    }
+    this.source = null;
+    return released;
+  }
+}
@@ -0,0 +1,364 @@
+package imageprocessing.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Image store that keeps at most a given number of bytes of pixels in memory. When an image
+ * pushes it over that budget, the least recently used images are written to binary PPM files in
+ * a temporary directory and dropped from memory, and they are read back the next time they are
+ * needed. Images never change once stored, so an image is written out at most once; evicting it
+ * again after it was read back only drops it from memory. The image just stored or read is never
+ * evicted, so an image larger than the whole budget still works.
+ *
+ * Views (like a flipped image) share their pixel array with the image they were made from, so
+ * memory is counted once per distinct array rather than once per image, and an image whose
+ * array another image in memory still uses is never evicted, since that would free nothing.
+ *
+ * The store can be used from several threads. Its lock only guards the bookkeeping: files are
+ * written and read after letting go of it, with the image marked as being spilled or loaded
+ * meanwhile, so a thread reading back one image doesn't hold up threads using the others. Two
+ * threads reading back the same image read it once. A file is deleted as soon as its image is
+ * released, and whatever is left when the program exits is deleted then.
+ */
+public final class SpillingImageStore implements ImageStore {
+  // system property holding the default memory budget in bytes
+  static final String BUDGET_PROPERTY = "imageprocessing.budget";
+  // store used by every model that isn't given one, or null before the first
+  private static SpillingImageStore shared;
+
+  private final long budget;
+  // guards everything below; never held while reading or writing a file
+  private final Object lock;
+  // every image in the store, least recently used first
+  private final LinkedHashMap<Long, Entry> entries;
+  // number of in-memory images using each pixel array
+  private final IdentityHashMap<int[], Integer> arrays;
+  private long nextHandle;
+  private long bytesInMemory;
+  private long hits;
+  private long misses;
+  private long spills;
+  private Path spillDirectory;
+
+  /**
+   * Creates a store keeping at most the given number of bytes of pixels in memory
+   * @param budget memory budget in bytes
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public SpillingImageStore(long budget) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("memory budget can't be negative");
+    }
+    this.budget = budget;
+    this.lock = new Object();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.arrays = new IdentityHashMap<>();
+  }
+
+  /**
+   * Gets the store shared by every model that isn't given its own, creating it the first time
+   * with the budget in the imageprocessing.budget system property, or half of the maximum heap
+   * size if it isn't set. Sharing it means models running side by side, like the ones -batch
+   * runs, split that budget rather than each assuming it has all of it
+   * @return the shared store
+   */
+  public static synchronized SpillingImageStore shared() {
+    if (shared == null) {
+      shared = new SpillingImageStore(Long.getLong(BUDGET_PROPERTY,
+          Runtime.getRuntime().maxMemory() / 2));
+    }
+    return shared;
+  }
+
+  @Override
+  public long put(PackedImage image) {
+    long handle;
+    List<Entry> writes;
+    synchronized (this.lock) {
+      handle = this.nextHandle;
+      this.nextHandle += 1;
+      this.entries.put(handle, new Entry(handle, image));
+      this.hold(image);
+      writes = this.evict(handle);
+    }
+    this.spill(writes);
+    return handle;
+  }
+
+  @Override
+  public PackedImage get(long handle) {
+    Entry entry;
+    synchronized (this.lock) {
+      entry = this.entries.get(handle);
+      if (entry == null) {
+        throw new IllegalArgumentException("no image with handle " + handle);
+      }
+      boolean interrupted = false;
+      while (entry.loading) {
+        try {
+          this.lock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (entry.image != null) {
+        this.hits += 1;
+        return entry.image;
+      }
+      this.misses += 1;
+      entry.loading = true;
+    }
+    PackedImage image = null;
+    try {
+      image = PpmReader.read(entry.file.toString());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read spilled image " + entry.file);
+    } finally {
+      if (image == null) {
+        // let a waiting thread try instead
+        synchronized (this.lock) {
+          entry.loading = false;
+          this.lock.notifyAll();
+        }
+      }
+    }
+    List<Entry> writes;
+    synchronized (this.lock) {
+      entry.loading = false;
+      this.lock.notifyAll();
+      if (this.entries.get(handle) != entry) {
+        // released while it was read
+        return image;
+      }
+      entry.image = image;
+      this.hold(image);
+      writes = this.evict(handle);
+    }
+    this.spill(writes);
+    return image;
+  }
+
+  @Override
+  public void release(long handle) {
+    Path file;
+    synchronized (this.lock) {
+      Entry entry = this.entries.remove(handle);
+      if (entry == null) {
+        return;
+      }
+      // an image being spilled already left the count when it was chosen
+      if (entry.image != null && !entry.spilling) {
+        this.letGo(entry.image);
+      }
+      file = entry.file;
+    }
+    if (file != null) {
+      delete(file);
+    }
+  }
+
+  @Override
+  public long getHits() {
+    synchronized (this.lock) {
+      return this.hits;
+    }
+  }
+
+  @Override
+  public long getMisses() {
+    synchronized (this.lock) {
+      return this.misses;
+    }
+  }
+
+  @Override
+  public long getSpills() {
+    synchronized (this.lock) {
+      return this.spills;
+    }
+  }
+
+  @Override
+  public long getBytesInMemory() {
+    synchronized (this.lock) {
+      return this.bytesInMemory;
+    }
+  }
+
+  /**
+   * Gets the memory budget of this store
+   * @return budget in bytes
+   */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  @Override
+  public String toString() {
+    synchronized (this.lock) {
+      return "hits " + this.hits + ", misses " + this.misses + ", spills " + this.spills + ", "
+          + this.bytesInMemory + " of " + this.budget + " bytes in memory, "
+          + this.entries.size() + " images";
+    }
+  }
+
+  /**
+   * Chooses least recently used images to move out of memory until the store is within its
+   * budget. Images already on disk are dropped right away; the others are counted out of memory
+   * now, marked as spilling, and returned to be written after the lock is let go
+   * @param keep handle of the image just used, which stays in memory
+   * @return images to write to disk
+   */
+  private List<Entry> evict(long keep) {
+    List<Entry> writes = new ArrayList<>();
+    Iterator<Entry> eldest = this.entries.values().iterator();
+    while (this.bytesInMemory > this.budget && eldest.hasNext()) {
+      Entry entry = eldest.next();
+      if (entry.handle == keep || entry.image == null || entry.spilling
+          || this.arrays.get(entry.image.getPixels()) > 1) {
+        continue;
+      }
+      this.letGo(entry.image);
+      if (entry.file == null) {
+        entry.spilling = true;
+        writes.add(entry);
+      } else {
+        entry.image = null;
+      }
+    }
+    return writes;
+  }
+
+  /**
+   * Writes images chosen by evict to disk and drops them from memory. An image that can't be
+   * written stays in memory, and one released while it was written has its file deleted
+   * @param writes images to write
+   */
+  private void spill(List<Entry> writes) {
+    for (Entry entry : writes) {
+      Path file = null;
+      try {
+        file = this.spillDirectory().resolve(entry.handle + ".ppm");
+        PpmWriter.writeBinary(entry.image, file.toString(), false);
+      } catch (IOException | RuntimeException e) {
+        if (file != null) {
+          delete(file);
+        }
+        file = null;
+      }
+      boolean released;
+      synchronized (this.lock) {
+        entry.spilling = false;
+        released = this.entries.get(entry.handle) != entry;
+        if (released) {
+          entry.image = null;
+        } else if (file == null) {
+          this.hold(entry.image);
+        } else {
+          entry.file = file;
+          entry.image = null;
+          this.spills += 1;
+        }
+      }
+      if (released && file != null) {
+        delete(file);
+      }
+    }
+  }
+
+  /**
+   * Counts an image as in memory, adding its pixel array to the total unless another image in
+   * memory already uses it
+   * @param image image now in memory
+   */
+  private void hold(PackedImage image) {
+    if (this.arrays.merge(image.getPixels(), 1, Integer::sum) == 1) {
+      this.bytesInMemory += image.byteSize();
+    }
+  }
+
+  /**
+   * Counts an image as no longer in memory, removing its pixel array from the total once no
+   * image in memory uses it
+   * @param image image leaving memory
+   */
+  private void letGo(PackedImage image) {
+    int users = this.arrays.get(image.getPixels()) - 1;
+    if (users == 0) {
+      this.arrays.remove(image.getPixels());
+      this.bytesInMemory -= image.byteSize();
+    } else {
+      this.arrays.put(image.getPixels(), users);
+    }
+  }
+
+  /**
+   * Gets the directory spilled images are written to, creating it the first time along with a
+   * shutdown hook that deletes it and anything still in it
+   * @return path of the directory
+   * @throws IOException if it can't be created
+   */
+  private synchronized Path spillDirectory() throws IOException {
+    if (this.spillDirectory == null) {
+      Path directory = Files.createTempDirectory("imageprocessing");
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try (Stream<Path> files = Files.list(directory)) {
+          files.forEach(SpillingImageStore::delete);
+        } catch (IOException e) {
+          // nothing more can be done while exiting
+        }
+        delete(directory);
+      }));
+      this.spillDirectory = directory;
+    }
+    return this.spillDirectory;
+  }
+
+  /**
+   * Deletes a file if it exists, ignoring failure
+   * @param file file to delete
+   */
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // left for the shutdown hook
+    }
+  }
+
+  /**
+   * One stored image, in memory, on disk, or both
+   */
+  private static final class Entry {
+    private final long handle;
+    // pixels, or null if the image is only on disk
+    private PackedImage image;
+    // file the image was spilled to, or null if it never was
+    private Path file;
+    // true while the image is written to disk, after it was counted out of memory
+    private boolean spilling;
+    // true while a thread reads the image back from disk
+    private boolean loading;
+
+    /**
+     * Creates an entry for an image in memory
+     * @param handle handle of the image
+     * @param image the image
+     */
+    private Entry(long handle, PackedImage image) {
+      this.handle = handle;
+      this.image = image;
+    }
+  }
+}
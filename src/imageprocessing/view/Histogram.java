@@ -1,5 +1,6 @@
 package imageprocessing.view;
 
+import imageprocessing.model.ImageStatistics;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -8,42 +9,22 @@ import java.awt.image.BufferedImage;
  * Represents a histogram of an image to visualize distribution of color and intensity
  */
 public class Histogram extends JPanel {
-  private BufferedImage image;
   private int[][] histogram;
   private BufferedImage histogramImage;
 
   /**
-   * Takes in an image and creates a histogram of RGB and intensity components, then creates the image
-   * @param image source image
+   * Takes in the statistics of an image and draws a histogram of its RGB and intensity
+   * components. The counts come from the model, so this only renders
+   * @param statistics statistics of source image
    */
-  public Histogram(Image image) {
-    this.image = (BufferedImage) image;
-    this.computeHistogram();
-    this.createHistogramImage();
-  }
-
-  /**
-   * Computes histogram and puts values in a 2D int array
-   */
-  private void computeHistogram() {
-    histogram = new int[4][256]; // r,g,b,intensity
-
-    for (int y = 0; y < image.getHeight(); y+=1) {
-      for (int x = 0; x < image.getWidth(); x+=1) {
-        int rgb = image.getRGB(x, y);
-        Color color = new Color(rgb);
-
-        int red = color.getRed();
-        int green = color.getGreen();
-        int blue = color.getBlue();
-        int intensity = (red + green + blue) / 3;
-
-        histogram[0][red]+=1;
-        histogram[1][green]+=1;
-        histogram[2][blue]+=1;
-        histogram[3][intensity]+=1;
+  public Histogram(ImageStatistics statistics) {
+    this.histogram = new int[4][256]; // r,g,b,intensity
+    for (int channel = 0; channel < 4; channel+=1) {
+      for (int value = 0; value < 256; value+=1) {
+        this.histogram[channel][value] = (int) statistics.getCount(channel, value);
       }
     }
+    this.createHistogramImage();
   }
 
   /**
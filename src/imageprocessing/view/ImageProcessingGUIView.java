@@ -1,7 +1,9 @@
 package imageprocessing.view;
 
 import imageprocessing.controller.Features;
-import java.awt.Image;
+import imageprocessing.model.ImagePyramid;
+import imageprocessing.model.ImageStatistics;
+import java.awt.Dimension;
 
 /**
  * Interface for a view using Swing GUI
@@ -29,10 +31,10 @@ public interface ImageProcessingGUIView {
   void setSaveFile(String filename, String nameID);
 
   /**
-   * Sets image display in view to given image
-   * @param image
+   * Sets image display in view to the image with given pyramid, drawn at the current zoom
+   * @param pyramid pyramid of image to display
    */
-  void setImageDisplay(Image image);
+  void setImageDisplay(ImagePyramid pyramid);
 
   /**
    * Sets workingNameID indicating which image is being worked on to given name ID
@@ -47,8 +49,25 @@ public interface ImageProcessingGUIView {
   void setMessage(String message);
 
   /**
-   * Sets histogram panel in view to given histogram image
-   * @param image
+   * Sets histogram panel in view to a histogram of the given image statistics
+   * @param statistics statistics of the image shown
    */
-  void setHistogram(Image image);
+  void setHistogram(ImageStatistics statistics);
+
+  /**
+   * Shows that an operation is running in the background
+   * @param operation name of the operation
+   */
+  void showProgress(String operation);
+
+  /**
+   * Stops showing that an operation is running
+   */
+  void hideProgress();
+
+  /**
+   * Gets the size of the area images are displayed in
+   * @return display size in pixels
+   */
+  Dimension getDisplaySize();
 }
\ No newline at end of file
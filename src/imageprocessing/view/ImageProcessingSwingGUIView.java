@@ -1,6 +1,8 @@
 package imageprocessing.view;
 import imageprocessing.controller.Features;
 import imageprocessing.model.ImageProcessingModel;
+import imageprocessing.model.ImagePyramid;
+import imageprocessing.model.ImageStatistics;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -17,15 +19,19 @@ import javax.swing.filechooser.FileNameExtensionFilter;
  * Swing GUI View implementation for Image Processing editor
  */
 public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessingGUIView {
-  private JButton flipHButton, flipVButton, greyButton, blurButton, sharpenButton, sepiaButton, brightenButton, resetButton;
+  private JButton flipHButton, flipVButton, greyButton, blurButton, sharpenButton, sepiaButton, brightenButton, resetButton, renderFullButton;
   private JButton fileOpenButton, fileSaveButton;
   private JButton exitButton;
   private JPanel mainPanel, buttonPanel, brightenPanel, messagePanel, imagePanel;
   private JScrollPane mainScrollPane;
-  private JLabel fileOpenDisplay, fileSaveDisplay, imageDisplay, workingNameID, brightenInstruction, fileOpenName, messageLabel, histogramLabel;
+  private JLabel fileOpenDisplay, fileSaveDisplay, workingNameID, brightenInstruction, fileOpenName, messageLabel, histogramLabel;
   private JScrollPane imageScrollPane;
   JRadioButton[] radioButtons;
   private JTextField brightIncrement;
+  private JProgressBar progressBar;
+  private JCheckBox previewBox;
+  private PyramidDisplay imageDisplay;
+  private JButton zoomInButton, zoomOutButton;
 
   /**
    * Constructor:
@@ -34,7 +40,7 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
    *    - image panel for showing the current working image and its corresponding histogram
    *    - button panel for editing options
    *      - brighten panel in button panel for brighten instructions and increment specifier
-   *    - message panel for showing alerts/messages to user
+   *    - message panel for showing alerts/messages to user and progress of running operations
    * - initalizes all editing buttons, including:
    *  - flipping horizontally
    *  - flipping vertically
@@ -44,6 +50,9 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
    *  - turning into sepia tone
    *  - brightening
    *  - resetting to original
+ *  - previewing edits on a downscaled copy
+ *  - rendering the working image at full resolution
+ *  - zooming in and out (also control and the mouse wheel; drag the image to pan)
    *  - opening file
    *  - saving file
    *  - exiting
@@ -64,7 +73,7 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
     imagePanel.setLayout(new GridLayout(1, 0, 10, 10));
     workingNameID = new JLabel("Name ID will appear here");
 
-    imageDisplay = new JLabel();
+    imageDisplay = new PyramidDisplay();
     imageScrollPane = new JScrollPane(imageDisplay);
     imageScrollPane.setPreferredSize(new Dimension(300,500));
     imagePanel.add(imageScrollPane);
@@ -82,6 +91,12 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
     sharpenButton = new JButton("sharpen");
     sepiaButton = new JButton("sepia");
     resetButton = new JButton("reset");
+    previewBox = new JCheckBox("preview");
+    zoomInButton = new JButton("zoom in");
+    zoomOutButton = new JButton("zoom out");
+    zoomInButton.addActionListener(evt -> imageDisplay.zoomBy(2));
+    zoomOutButton.addActionListener(evt -> imageDisplay.zoomBy(0.5));
+    renderFullButton = new JButton("render full");
     brightenPanel = new JPanel();
     brightenPanel.setLayout(new BoxLayout(brightenPanel, BoxLayout.PAGE_AXIS));
     brightenButton = new JButton("brighten");
@@ -120,6 +135,10 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
     }
     buttonPanel.add(componentPanel);
     buttonPanel.add(resetButton);
+    buttonPanel.add(previewBox);
+    buttonPanel.add(renderFullButton);
+    buttonPanel.add(zoomInButton);
+    buttonPanel.add(zoomOutButton);
     mainPanel.add(buttonPanel);
 
     // upload/save
@@ -153,6 +172,11 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
     messagePanel.setBorder(BorderFactory.createTitledBorder("Messages"));
     messageLabel = new JLabel("Any alerts will show up here");
     messagePanel.add(messageLabel);
+    progressBar = new JProgressBar();
+    progressBar.setIndeterminate(true);
+    progressBar.setStringPainted(true);
+    progressBar.setVisible(false);
+    messagePanel.add(progressBar);
     mainPanel.add(messagePanel);
 
     exitButton = new JButton("Exit");
@@ -282,6 +306,9 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
         this.messageLabel.setText("Image hasn't been uploaded yet");
       }
     });
+    previewBox.addActionListener(evt -> features.setPreview(previewBox.isSelected(),
+        workingNameID.getText()));
+    renderFullButton.addActionListener(evt -> features.renderFull(workingNameID.getText()));
   }
 
   @Override
@@ -296,8 +323,8 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
   }
 
   @Override
-  public void setImageDisplay(Image image) {
-    this.imageDisplay.setIcon(new ImageIcon(image));
+  public void setImageDisplay(ImagePyramid pyramid) {
+    this.imageDisplay.setPyramid(pyramid);
   }
 
   @Override
@@ -312,7 +339,29 @@ public class ImageProcessingSwingGUIView extends JFrame implements ImageProcessi
   }
 
   @Override
-  public void setHistogram(Image image) {
-    this.histogramLabel.setIcon(new ImageIcon(new Histogram(image).getHistogramImage()));
+  public void setHistogram(ImageStatistics statistics) {
+    this.histogramLabel.setIcon(new ImageIcon(new Histogram(statistics).getHistogramImage()));
+  }
+
+  @Override
+  public void showProgress(String operation) {
+    this.progressBar.setString("Running " + operation + "...");
+    this.progressBar.setVisible(true);
+    this.messagePanel.revalidate();
+  }
+
+  @Override
+  public void hideProgress() {
+    this.progressBar.setVisible(false);
+    this.messagePanel.revalidate();
+  }
+
+  @Override
+  public Dimension getDisplaySize() {
+    Dimension size = this.imageScrollPane.getViewport().getExtentSize();
+    if (size.width <= 0 || size.height <= 0) {
+      return this.imageScrollPane.getPreferredSize();
+    }
+    return size;
   }
 }
\ No newline at end of file
@@ -10,6 +10,11 @@ public class ImageProcessingTextView implements ImageProcessingView {
 
   @Override
   public String view(String nameID) {
-    return "This model has " + this.model.getSize() + " total image(s).";
+    return this.view(nameID, 0);
+  }
+
+  @Override
+  public String view(String nameID, int unmade) {
+    return "This model has " + (this.model.getSize() + unmade) + " total image(s).";
   }
 }
\ No newline at end of file
@@ -9,4 +9,15 @@ public interface ImageProcessingView {
    * @return
    */
   String view(String nameID);
+
+  /**
+   * Returns visual representation like view, counting images a script skipped making as if they
+   * had been made
+   * @param nameID
+   * @param unmade number of images skipped that aren't in the model
+   * @return
+   */
+  default String view(String nameID, int unmade) {
+    return this.view(nameID);
+  }
 }
\ No newline at end of file
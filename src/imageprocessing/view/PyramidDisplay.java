@@ -0,0 +1,167 @@
+package imageprocessing.view;
+
+import imageprocessing.model.ImagePyramid;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+
+/**
+ * Displays an image at any zoom from its pyramid. Each repaint only draws the part of the image
+ * inside the repainted area, from the smallest pyramid level with at least one pixel per screen
+ * pixel, so scrolling or zooming around a large image never scales the whole image. Meant to sit
+ * in a scroll pane: dragging pans, and the mouse wheel with control held zooms around the cursor
+ */
+public class PyramidDisplay extends JComponent {
+  private static final double MIN_ZOOM = 1.0 / 64;
+  private static final double MAX_ZOOM = 16;
+
+  private ImagePyramid pyramid;
+  private double zoom;
+  // where the last drag event was, on screen
+  private Point dragStart;
+
+  /**
+   * Creates an empty display at 100% zoom
+   */
+  public PyramidDisplay() {
+    this.zoom = 1;
+    MouseAdapter mouse = new MouseAdapter() {
+      @Override
+      public void mousePressed(MouseEvent e) {
+        dragStart = e.getLocationOnScreen();
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        pan(e.getLocationOnScreen());
+      }
+
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        if (e.isControlDown()) {
+          zoomAround(e.getPoint(), e.getWheelRotation() < 0 ? 2 : 0.5);
+        } else {
+          // listening for the wheel stops it reaching the scroll pane, so pass scrolls on
+          Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class,
+              PyramidDisplay.this);
+          if (scrollPane != null) {
+            scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(PyramidDisplay.this, e,
+                scrollPane));
+          }
+        }
+      }
+    };
+    this.addMouseListener(mouse);
+    this.addMouseMotionListener(mouse);
+    this.addMouseWheelListener(mouse);
+  }
+
+  /**
+   * Shows a new image, keeping the zoom
+   * @param pyramid pyramid of the image
+   */
+  public void setPyramid(ImagePyramid pyramid) {
+    this.pyramid = pyramid;
+    this.revalidate();
+    this.repaint();
+  }
+
+  /**
+   * Changes the zoom, keeping the middle of the visible area in place
+   * @param factor amount to multiply the zoom by
+   */
+  public void zoomBy(double factor) {
+    Rectangle visible = this.getVisibleRect();
+    this.zoomAround(new Point(visible.x + visible.width / 2, visible.y + visible.height / 2),
+        factor);
+  }
+
+  /**
+   * Changes the zoom, keeping the image pixel under the given point in place
+   * @param point point in this component
+   * @param factor amount to multiply the zoom by
+   */
+  private void zoomAround(Point point, double factor) {
+    double zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, this.zoom * factor));
+    if (zoom == this.zoom) {
+      return;
+    }
+    double scale = zoom / this.zoom;
+    this.zoom = zoom;
+    if (this.getParent() instanceof JViewport) {
+      JViewport viewport = (JViewport) this.getParent();
+      Point corner = viewport.getViewPosition();
+      int x = (int) Math.round(point.x * scale) - (point.x - corner.x);
+      int y = (int) Math.round(point.y * scale) - (point.y - corner.y);
+      viewport.setViewSize(this.getPreferredSize());
+      viewport.setViewPosition(new Point(Math.max(0, x), Math.max(0, y)));
+    }
+    this.revalidate();
+    this.repaint();
+  }
+
+  /**
+   * Scrolls the enclosing viewport by how far the mouse moved since the last drag event
+   * @param location mouse location on screen
+   */
+  private void pan(Point location) {
+    if (this.dragStart == null || !(this.getParent() instanceof JViewport)) {
+      return;
+    }
+    Rectangle visible = this.getVisibleRect();
+    visible.translate(this.dragStart.x - location.x, this.dragStart.y - location.y);
+    this.scrollRectToVisible(visible);
+    this.dragStart = location;
+  }
+
+  @Override
+  public Dimension getPreferredSize() {
+    if (this.pyramid == null) {
+      return new Dimension(0, 0);
+    }
+    return new Dimension((int) Math.ceil(this.pyramid.getWidth() * this.zoom),
+        (int) Math.ceil(this.pyramid.getHeight() * this.zoom));
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    if (this.pyramid == null) {
+      return;
+    }
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(this.getPreferredSize());
+    }
+    BufferedImage level = this.pyramid.getLevel(this.pyramid.levelFor(this.zoom));
+    // level pixels per screen pixel, across and down
+    double across = level.getWidth() / (this.pyramid.getWidth() * this.zoom);
+    double down = level.getHeight() / (this.pyramid.getHeight() * this.zoom);
+    int left = Math.max(0, (int) Math.floor(clip.x * across));
+    int top = Math.max(0, (int) Math.floor(clip.y * down));
+    int right = Math.min(level.getWidth(), (int) Math.ceil((clip.x + clip.width) * across));
+    int bottom = Math.min(level.getHeight(), (int) Math.ceil((clip.y + clip.height) * down));
+    if (left >= right || top >= bottom) {
+      return;
+    }
+    Graphics2D g2 = (Graphics2D) g;
+    g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, this.zoom < 1
+        ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+        : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    g2.drawImage(level, (int) Math.round(left / across), (int) Math.round(top / down),
+        (int) Math.round(right / across), (int) Math.round(bottom / down),
+        left, top, right, bottom, null);
+  }
+}